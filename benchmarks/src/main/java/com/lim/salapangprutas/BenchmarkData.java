@@ -0,0 +1,109 @@
+package com.lim.salapangprutas;
+
+import java.util.Random;
+
+/**
+ * Deterministic entity layouts shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final int SCREEN_WIDTH = 1080;
+    static final int SCREEN_HEIGHT = 2200;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Play-area height for n objects. Beyond a normal wave the area grows with n, so the
+     * density stays around one object per two grid cells instead of turning into one big
+     * overlapping pile.
+     */
+    static int playHeight(int n) {
+        int size = GameSimulation.OBJECT_SIZE;
+        return Math.max(SCREEN_HEIGHT, n * size * size * 2 / SCREEN_WIDTH);
+    }
+
+    /**
+     * Fills a store with n objects at random positions and falling velocities, roughly
+     * 15% pests and 10% flowers like a late wave. The speeds are high enough that some
+     * pairs get swept by the continuous collision check.
+     */
+    static EntityStore populate(int n, long seed) {
+        Random rnd = new Random(seed);
+        EntityStore store = new EntityStore(n, new Random(seed + 1));
+        int size = GameSimulation.OBJECT_SIZE;
+        int height = playHeight(n);
+        for (int i = 0; i < n; i++) {
+            float x = rnd.nextInt(SCREEN_WIDTH - size);
+            float y = rnd.nextInt(height - size);
+            double roll = rnd.nextDouble();
+            if (roll < 0.15) {
+                store.add(EntityStore.TYPE_PEST, 0, x, y, size, 0, 60, -5);
+            } else if (roll < 0.25) {
+                store.addWithSpeed(EntityStore.TYPE_FLOWER, 0, x, y, size, 40, 5);
+            } else {
+                store.addWithSpeed(EntityStore.TYPE_FRUIT, 0, x, y, size, 40, 1);
+            }
+        }
+        // Place the previous positions one tick back, as if everything had just moved.
+        for (int i = 0; i < n; i++) {
+            store.prevX[i] = store.x[i] - store.dx[i];
+            store.prevY[i] = store.y[i] - store.dy[i];
+        }
+        return store;
+    }
+
+    /**
+     * Records a full round played by a simple bot at 60 fps: every frame it taps the
+     * lowest fruit or flower that is clear of pests, swiping across it on every third
+     * frame. Stands in for a session pulled off a device when ReplayBenchmark is run
+     * without one.
+     */
+    static byte[] syntheticSession(long seed) {
+        GameSimulation simulation = new GameSimulation(seed, 8, 3, 3);
+        simulation.setScreenSize(SCREEN_WIDTH, SCREEN_HEIGHT);
+        SessionRecorder recorder = new SessionRecorder();
+        recorder.begin(simulation);
+        TouchBuffer touches = new TouchBuffer();
+        long frameNanos = 16_666_667L;
+        for (int frame = 0; !simulation.isOver(); frame++) {
+            touches.clear();
+            EntityStore store = simulation.getStore();
+            int target = -1;
+            for (int i = 0; i < store.count(); i++) {
+                if (!store.isPenalty(i) && !nearPest(store, i)
+                        && (target < 0 || store.y[i] > store.y[target])) {
+                    target = i;
+                }
+            }
+            if (target >= 0) {
+                float cx = store.x[target] + store.size[target] / 2f;
+                float cy = store.y[target] + store.size[target] / 2f;
+                if (frame % 3 == 0) {
+                    touches.addSegment(cx - 20, cy - 20, cx + 20, cy + 20);
+                } else {
+                    touches.add(cx, cy);
+                }
+            }
+            recorder.recordStep(simulation, frameNanos, touches);
+            simulation.step(frameNanos, touches);
+        }
+        recorder.finish(simulation);
+        return recorder.toByteArray();
+    }
+
+    // Whether a pest is close enough to entity i that a touch on i might catch it too.
+    private static boolean nearPest(EntityStore store, int i) {
+        for (int j = 0; j < store.count(); j++) {
+            if (store.isPenalty(j)) {
+                float ddx = store.x[j] - store.x[i];
+                float ddy = store.y[j] - store.y[i];
+                float reach = store.size[j] + store.size[i];
+                if (ddx * ddx + ddy * ddy < reach * reach) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
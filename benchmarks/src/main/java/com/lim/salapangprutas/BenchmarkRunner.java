@@ -0,0 +1,30 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line, but unless told
+ * otherwise runs every game benchmark and writes machine-readable results to
+ * target/jmh-result.json so runs can be compared between releases.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (cli.getIncludes().isEmpty()) {
+            options.include("com\\.lim\\.salapangprutas\\..*Benchmark");
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            options.result("target/jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
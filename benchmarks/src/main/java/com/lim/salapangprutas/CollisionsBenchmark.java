@@ -0,0 +1,72 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collisions.checkCollisions: boundary pass plus pair resolution. With broadphase=false the
+ * all-pairs path runs, which exercises circlesOverlap and resolveOverlap directly. With
+ * swept=false only end-of-tick overlaps are checked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionsBenchmark {
+
+    @Param({"8", "64", "512", "4096"})
+    public int n;
+
+    // Below Collisions.BROADPHASE_MIN_OBJECTS (16) both settings take the all-pairs path,
+    // so at n=8 the two results measure the same code.
+    @Param({"true", "false"})
+    public boolean broadphase;
+
+    @Param({"true", "false"})
+    public boolean swept;
+
+    private EntityStore store;
+    private int height;
+    private float[] startX;
+    private float[] startY;
+    private float[] startDx;
+    private float[] startDy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkData.populate(n, 42);
+        height = BenchmarkData.playHeight(n);
+        startX = store.x.clone();
+        startY = store.y.clone();
+        startDx = store.dx.clone();
+        startDy = store.dy.clone();
+        Collisions.setBroadphaseEnabled(broadphase);
+        Collisions.setSweptEnabled(swept);
+    }
+
+    @Benchmark
+    public EntityStore checkCollisions() {
+        // Restore the layout first, otherwise after a few calls every overlap is resolved
+        // and only the cheap no-contact case would be measured. The copies are O(n).
+        System.arraycopy(startX, 0, store.x, 0, n);
+        System.arraycopy(startY, 0, store.y, 0, n);
+        System.arraycopy(startDx, 0, store.dx, 0, n);
+        System.arraycopy(startDy, 0, store.dy, 0, n);
+        Collisions.checkCollisions(store, BenchmarkData.SCREEN_WIDTH, height);
+        return store;
+    }
+}
@@ -0,0 +1,45 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tick movement and rotation of every entity (what rndSqr.update does for one object).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityUpdateBenchmark {
+
+    @Param({"8", "64", "512", "4096"})
+    public int n;
+
+    private EntityStore store;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // Fresh positions each iteration so the coordinates stay in a realistic range.
+        store = BenchmarkData.populate(n, 42);
+    }
+
+    @Benchmark
+    public EntityStore updateAll() {
+        store.updateAll();
+        return store;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Touch hit-testing for a batch of touch samples, as delivered by one frame of a swipe:
+ * point tests with EntityStore.contains (the check behind rndSqr.contains) against the
+ * swept segment test the simulation uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+
+    @Param({"8", "64", "512", "4096"})
+    public int n;
+
+    // Touch samples per frame: a tap, a normal swipe and a fast swipe with history.
+    @Param({"1", "16", "64"})
+    public int touches;
+
+    private EntityStore store;
+    private final TouchBuffer batch = new TouchBuffer();
+    private final SweptHitTest swept = new SweptHitTest();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkData.populate(n, 42);
+        // A diagonal swipe across the play area.
+        Random rnd = new Random(7);
+        int height = BenchmarkData.playHeight(n);
+        float startX = rnd.nextInt(BenchmarkData.SCREEN_WIDTH / 2);
+        float startY = rnd.nextInt(height / 2);
+        batch.clear();
+        batch.add(startX, startY);
+        for (int t = 1; t < touches; t++) {
+            batch.addSegment(startX + (t - 1) * 12f, startY + (t - 1) * 9f,
+                    startX + t * 12f, startY + t * 9f);
+        }
+    }
+
+    @Benchmark
+    public int hitTest() {
+        // Count hits without removing anything, so every invocation sees the same layout.
+        int hits = 0;
+        for (int t = 0, count = batch.count(); t < count; t++) {
+            float x = batch.x(t);
+            float y = batch.y(t);
+            for (int i = 0, total = store.count(); i < total; i++) {
+                if (store.contains(i, x, y)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int sweptHitTest() {
+        return swept.test(store, batch, BenchmarkData.SCREEN_WIDTH, BenchmarkData.playHeight(n));
+    }
+}
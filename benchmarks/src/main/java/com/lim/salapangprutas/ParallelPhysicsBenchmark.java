@@ -0,0 +1,74 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One storm tick's physics on ParallelPhysics: movement plus collisions, at 1 to 8
+ * threads. threads=1 runs on the benchmark thread alone, so the ratio against it is the
+ * speed-up; every thread count computes the same result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelPhysicsBenchmark {
+
+    @Param({"1024", "4096"})
+    public int n;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ParallelPhysics physics;
+    private EntityStore store;
+    private int height;
+    private float[] startX;
+    private float[] startY;
+    private float[] startDx;
+    private float[] startDy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        physics = new ParallelPhysics(threads);
+        store = BenchmarkData.populate(n, 42);
+        height = BenchmarkData.playHeight(n);
+        startX = store.x.clone();
+        startY = store.y.clone();
+        startDx = store.dx.clone();
+        startDy = store.dy.clone();
+        Collisions.setSweptEnabled(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        physics.shutdown();
+    }
+
+    @Benchmark
+    public EntityStore tick() {
+        // Same layout every call, as in CollisionsBenchmark.
+        System.arraycopy(startX, 0, store.x, 0, n);
+        System.arraycopy(startY, 0, store.y, 0, n);
+        System.arraycopy(startDx, 0, store.dx, 0, n);
+        System.arraycopy(startDy, 0, store.dy, 0, n);
+        physics.integrate(store);
+        physics.checkCollisions(store, BenchmarkData.SCREEN_WIDTH, height);
+        return store;
+    }
+}
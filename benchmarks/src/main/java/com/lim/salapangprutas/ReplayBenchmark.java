@@ -0,0 +1,53 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole recorded round replayed through the simulation: spawning, input, movement and
+ * collisions with a real session's timing and touches. Pass recordings pulled off a device
+ * (files/last_session.bin) with -p session=path,...; the default is a bot-played round.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({"synthetic"})
+    public String session;
+
+    private SessionReplayer replayer;
+
+    @Setup
+    public void setUp() throws IOException {
+        replayer = "synthetic".equals(session)
+                ? new SessionReplayer(BenchmarkData.syntheticSession(42))
+                : SessionReplayer.read(new File(session));
+        GameSimulation check = replayer.replay(null);
+        if (replayer.isComplete() && !replayer.matches(check)) {
+            throw new IllegalStateException("Replay of " + session + " diverged: score "
+                    + check.getScore() + ", recorded " + replayer.getRecordedScore());
+        }
+    }
+
+    @Benchmark
+    public int replay() {
+        return replayer.replay(null).getScore();
+    }
+}
@@ -0,0 +1,61 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Replays session recordings and prints the simulation's per-phase times, for a quick
+ * look at one recording without a JMH run:
+ * <pre>
+ *     java -cp target/benchmarks.jar com.lim.salapangprutas.ReplayRunner [-n runs] file...
+ * </pre>
+ * The first run of each file only warms up and checks that the replay reaches the
+ * recorded outcome. Without files, a bot-played round is replayed.
+ */
+public class ReplayRunner {
+
+    public static void main(String[] args) throws Exception {
+        int runs = 20;
+        int first = 0;
+        if (args.length >= 2 && "-n".equals(args[0])) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        Writer out = new OutputStreamWriter(System.out);
+        boolean diverged = false;
+        if (first == args.length) {
+            diverged = !run("synthetic", new SessionReplayer(BenchmarkData.syntheticSession(42)), runs, out);
+        }
+        for (int a = first; a < args.length; a++) {
+            diverged |= !run(args[a], SessionReplayer.read(new File(args[a])), runs, out);
+        }
+        out.flush();
+        if (diverged) {
+            System.exit(1);
+        }
+    }
+
+    // Returns false if the replay did not end like the recording.
+    private static boolean run(String name, SessionReplayer replayer, int runs, Writer out) throws Exception {
+        out.write(name + ": " + replayer + "\n");
+        GameSimulation result = replayer.replay(null);
+        boolean matches = !replayer.isComplete() || replayer.matches(result);
+        if (!matches) {
+            out.write("DIVERGED: replay ended with score " + result.getScore() + ", lives "
+                    + result.getLives() + ", " + result.getWaveCount() + " waves\n");
+        }
+
+        FrameProfiler profiler = new FrameProfiler();
+        long start = System.nanoTime();
+        for (int r = 0; r < runs; r++) {
+            replayer.replay(profiler);
+        }
+        long perRun = (System.nanoTime() - start) / Math.max(1, runs);
+        out.write(runs + " runs, " + perRun / 1000 + " us per run ("
+                + perRun / Math.max(1, replayer.getStepCount()) + " ns per step)\n");
+        profiler.dump(out);
+        out.write("\n");
+        return matches;
+    }
+}
@@ -0,0 +1,78 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The score history: loading a file of stored rounds at startup, and the best-scores query
+ * the game-over screen runs. 8000 rounds is just under the size that triggers compaction,
+ * so the largest file a device reads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreStoreBenchmark {
+
+    @Param({"1000", "8000"})
+    public int rounds;
+
+    private File file;
+    private ScoreStore loaded;
+    private final ScoreStore.Round[] top = new ScoreStore.Round[5];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        file = File.createTempFile("scores", ".log");
+        file.delete();
+        ScoreStore store = new ScoreStore(file);
+        store.load();
+        Random random = new Random(42);
+        for (int i = 0; i < rounds; i++) {
+            // One storm round in ten, a minute each, a round a few minutes apart.
+            store.add(new ScoreStore.Round(1_700_000_000_000L + 300_000L * i, random.nextLong(),
+                    random.nextInt(400), 1 + random.nextInt(20), 60_000, random.nextInt(4),
+                    i % 10 == 0));
+        }
+        store.flushAndWait();
+        store.shutdown();
+
+        loaded = load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    // Constructing a store starts no thread; its executor only does on the first task.
+    @Benchmark
+    public ScoreStore load() {
+        ScoreStore store = new ScoreStore(file);
+        store.load();
+        return store;
+    }
+
+    @Benchmark
+    public int topScores() {
+        return loaded.getTop(false, top, top.length) + loaded.getBestScore(false);
+    }
+}
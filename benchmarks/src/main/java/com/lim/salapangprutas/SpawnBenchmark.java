@@ -0,0 +1,47 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wave spawning: random placement, type selection and insertion into the entity store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+
+    // 3 is the first wave, 8 the cap for normal play.
+    @Param({"3", "8"})
+    public int waveSize;
+
+    private GameSimulation simulation;
+
+    @Setup
+    public void setUp() {
+        simulation = new GameSimulation(42, 8, 3, 3);
+        simulation.setScreenSize(BenchmarkData.SCREEN_WIDTH, BenchmarkData.SCREEN_HEIGHT);
+    }
+
+    @Benchmark
+    public EntityStore spawnWave() {
+        EntityStore store = simulation.getStore();
+        store.clear();
+        simulation.spawnWave(waveSize, 40);
+        return store;
+    }
+}
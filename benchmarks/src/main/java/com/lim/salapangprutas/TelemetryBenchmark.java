@@ -0,0 +1,56 @@
+package com.lim.salapangprutas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per gameplay event: Telemetry.record() on the game thread plus encoding it in the
+ * writer's batch, here both on one thread and without a file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryBenchmark {
+
+    // Events per batch; far more than a round produces between two drains.
+    private static final int BATCH = 1024;
+
+    private Telemetry telemetry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        telemetry = new Telemetry(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        telemetry.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int recordAndEncode() {
+        for (int i = 0; i < BATCH; i++) {
+            telemetry.record(Telemetry.EVENT_COLLISIONS, 50 * i, i & 31, 200);
+        }
+        int drained = telemetry.drain();
+        telemetry.clearBuffer();
+        return drained;
+    }
+}
@@ -0,0 +1,230 @@
+package com.lim.salapangprutas;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the game's assets in the background while the start countdown plays: sprites
+ * into the SpriteCache, the background image (decoded at display size; see
+ * BitmapDecoder), and the SoundManager's samples and music.
+ * The three run in parallel on their own threads. whenReady() is the barrier the
+ * countdown waits on before starting the game; it never blocks the UI thread.
+ * Also keeps the launch timeline, so the time to the first game frame can be reported.
+ */
+public class AssetPreloader {
+
+    private static AssetPreloader instance;
+
+    // How long the audio task waits for SoundPool to finish decoding its samples.
+    private static final long SOUND_LOAD_TIMEOUT_MILLIS = 3000;
+
+    private static final int TASK_SPRITES = 0;
+    private static final int TASK_BACKGROUND = 1;
+    private static final int TASK_AUDIO = 2;
+    private static final String[] TASK_NAMES = {"sprites", "background", "audio"};
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private long startNanos;
+    private final long[] taskNanos = new long[TASK_NAMES.length];
+    private int tasksLeft = TASK_NAMES.length;
+    private long readyNanos;
+    private boolean started = false;
+    private final List<Runnable> readyCallbacks = new ArrayList<>();
+
+    private Bitmap sourceBackground;  // Decoded but not yet fitted to the screen.
+    private Bitmap screenBackground;
+    private long gameStartNanos;
+    private boolean firstFrameReported = false;
+
+    private AssetPreloader(Context context) {
+        this.context = context;
+    }
+
+    // Singleton instance getter.
+    public static synchronized AssetPreloader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AssetPreloader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading everything. Later calls do nothing, so restarts reuse the assets.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startNanos = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(TASK_NAMES.length,
+                r -> new Thread(r, "AssetPreload"));
+        executor.execute(() -> runTask(TASK_SPRITES, this::loadSprites));
+        executor.execute(() -> runTask(TASK_BACKGROUND, this::loadBackground));
+        executor.execute(() -> runTask(TASK_AUDIO, this::loadAudio));
+        // The pool's threads exit once the three tasks are done.
+        executor.shutdown();
+    }
+
+    private void loadSprites() {
+        SpriteCache sprites = SpriteCache.getInstance(context);
+        for (int[] resources : GamePanel.SPRITE_RESOURCES) {
+            for (int resId : resources) {
+                sprites.get(resId, GameSimulation.OBJECT_SIZE);
+            }
+        }
+    }
+
+    // Decodes the background no larger than the display needs; see getScreenBackground().
+    private void loadBackground() {
+        DisplayMetrics display = context.getResources().getDisplayMetrics();
+        Bitmap decoded = BitmapDecoder.decodeSampled(context.getResources(), R.drawable.background,
+                display.widthPixels, display.heightPixels, Bitmap.Config.RGB_565);
+        synchronized (this) {
+            sourceBackground = decoded;
+        }
+    }
+
+    private void loadAudio() throws InterruptedException {
+        SoundManager sounds = SoundManager.getInstance(context);
+        if (!sounds.awaitLoaded(SOUND_LOAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            Log.w("AssetPreloader", "Sound samples still loading after "
+                    + SOUND_LOAD_TIMEOUT_MILLIS + " ms; starting anyway");
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private void runTask(int task, Task body) {
+        long start = System.nanoTime();
+        try {
+            body.run();
+        } catch (Exception e) {
+            // The game still starts; whatever failed is loaded on first use instead.
+            Log.e("AssetPreloader", "Preloading " + TASK_NAMES[task] + " failed", e);
+        }
+        List<Runnable> callbacks = null;
+        String report = null;
+        synchronized (this) {
+            taskNanos[task] = System.nanoTime() - start;
+            tasksLeft--;
+            if (tasksLeft == 0) {
+                readyNanos = System.nanoTime();
+                callbacks = new ArrayList<>(readyCallbacks);
+                readyCallbacks.clear();
+                report = "Assets " + describeTasks();
+            }
+        }
+        if (callbacks != null) {
+            Log.i("AssetPreloader", report);
+            for (Runnable callback : callbacks) {
+                mainHandler.post(callback);
+            }
+        }
+    }
+
+    /**
+     * Runs callback on the main thread once every asset is loaded: right away (posted) if
+     * they already are, otherwise as soon as the last one finishes.
+     */
+    public void whenReady(Runnable callback) {
+        synchronized (this) {
+            if (!started || tasksLeft > 0) {
+                readyCallbacks.add(callback);
+                return;
+            }
+        }
+        mainHandler.post(callback);
+    }
+
+    public synchronized boolean isReady() {
+        return started && tasksLeft == 0;
+    }
+
+    /**
+     * Returns the background scaled and center-cropped to exactly width x height, in
+     * RGB_565 since it is opaque. The bitmap is kept and returned again as long as the
+     * size stays the same, so restarts cost nothing. On a size change the previous
+     * bitmap's memory is reused if it is large enough. Shared; do not recycle it, and do
+     * not call this while a game thread is still drawing the previous result.
+     */
+    public synchronized Bitmap getScreenBackground(int width, int height) {
+        if (screenBackground != null && !screenBackground.isRecycled()
+                && screenBackground.getWidth() == width && screenBackground.getHeight() == height) {
+            return screenBackground;
+        }
+        Bitmap source = sourceBackground;
+        if (source == null) {
+            // Not preloaded, or already used up by an earlier size.
+            source = BitmapDecoder.decodeSampled(context.getResources(), R.drawable.background,
+                    width, height, Bitmap.Config.RGB_565);
+        }
+        screenBackground = BitmapDecoder.reshape(screenBackground, width, height, Bitmap.Config.RGB_565);
+        BitmapDecoder.drawCenterCrop(source, screenBackground);
+        // Only the screen-sized copy is drawn; the decoded image's memory becomes the spare
+        // buffer for the next decode.
+        sourceBackground = null;
+        BitmapDecoder.offerReusable(source);
+        return screenBackground;
+    }
+
+    // Marks the moment a game view is created, as the start of time-to-first-frame.
+    public synchronized void onGameStarted() {
+        gameStartNanos = System.nanoTime();
+        firstFrameReported = false;
+    }
+
+    /**
+     * Logs the time from launch and from game start to the first presented game frame,
+     * once per game. Called by the game thread after its first frame.
+     */
+    public void onFirstFrame() {
+        long now = System.nanoTime();
+        String report;
+        synchronized (this) {
+            if (firstFrameReported) {
+                return;
+            }
+            firstFrameReported = true;
+            report = "First game frame " + (now - startNanos) / 1_000_000 + " ms after launch, "
+                    + (now - gameStartNanos) / 1_000_000 + " ms after game start; assets "
+                    + describeTasks() + "; background "
+                    + (screenBackground != null ? screenBackground.getAllocationByteCount() / 1024 : 0)
+                    + " KB, " + SpriteCache.getInstance(context);
+        }
+        Log.i("AssetPreloader", report);
+    }
+
+    // Per-task load times and when everything was ready. Call with the lock held.
+    private String describeTasks() {
+        StringBuilder sb = new StringBuilder();
+        if (tasksLeft == 0) {
+            sb.append("ready at ").append((readyNanos - startNanos) / 1_000_000).append(" ms");
+        } else {
+            sb.append("still loading");
+        }
+        sb.append(" (");
+        for (int task = 0; task < TASK_NAMES.length; task++) {
+            if (task > 0) {
+                sb.append(", ");
+            }
+            sb.append(TASK_NAMES[task]).append(' ').append(taskNanos[task] / 1_000_000).append(" ms");
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.lim.salapangprutas;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * Decodes drawables no larger than they will be shown. The image is subsampled while
+ * decoding (inSampleSize) down to the smallest power-of-two reduction that still covers
+ * the target size, so a full-resolution copy never exists in memory. A bitmap that is no
+ * longer needed can be handed back with offerReusable(); the next decode that fits in it
+ * decodes straight into its memory (inBitmap) instead of allocating.
+ */
+public final class BitmapDecoder {
+
+    // One spare buffer is enough: the game only ever decodes one large image at a time.
+    private static Bitmap reusable;
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Largest power of two by which a srcWidth x srcHeight image can be subsampled while
+     * still being at least reqWidth x reqHeight.
+     */
+    public static int sampleSizeFor(int srcWidth, int srcHeight, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (srcWidth / (sampleSize * 2) >= reqWidth && srcHeight / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decodes resId subsampled to cover reqWidth x reqHeight, in the given config. The
+     * result is mutable and may live in a buffer previously passed to offerReusable().
+     */
+    public static Bitmap decodeSampled(Resources resources, int resId, int reqWidth, int reqHeight,
+                                       Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+        // Density scaling would undo the sampling, so decode at the file's pixel size.
+        options.inScaled = false;
+        options.inSampleSize = sampleSizeFor(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        Bitmap reuse = takeReusable(width, height, config);
+        if (reuse != null) {
+            options.inBitmap = reuse;
+            try {
+                return BitmapFactory.decodeResource(resources, resId, options);
+            } catch (IllegalArgumentException e) {
+                // The decoder refused the buffer after all; fall back to a fresh one.
+                options.inBitmap = null;
+                reuse.recycle();
+            }
+        }
+        return BitmapFactory.decodeResource(resources, resId, options);
+    }
+
+    /**
+     * Draws source into target scaled to fill it completely, cropping the overflow evenly on
+     * both sides (like ImageView's CENTER_CROP).
+     */
+    public static void drawCenterCrop(Bitmap source, Bitmap target) {
+        float scale = Math.max((float) target.getWidth() / source.getWidth(),
+                (float) target.getHeight() / source.getHeight());
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((target.getWidth() - source.getWidth() * scale) / 2f,
+                (target.getHeight() - source.getHeight() * scale) / 2f);
+        new Canvas(target).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+    }
+
+    /**
+     * Returns target reshaped to width x height in the given config if its memory is large
+     * enough, otherwise a new bitmap. The old contents are lost either way.
+     */
+    public static Bitmap reshape(Bitmap target, int width, int height, Bitmap.Config config) {
+        if (fits(target, width, height, config)) {
+            if (target.getWidth() != width || target.getHeight() != height
+                    || target.getConfig() != config) {
+                target.reconfigure(width, height, config);
+            }
+            return target;
+        }
+        if (target != null && !target.isRecycled()) {
+            target.recycle();
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands over a bitmap that is no longer drawn, so a later decode can reuse its memory.
+     * Keeps the larger of it and the current spare; the other is recycled.
+     */
+    public static synchronized void offerReusable(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        if (reusable == null || reusable.getAllocationByteCount() < bitmap.getAllocationByteCount()) {
+            if (reusable != null) {
+                reusable.recycle();
+            }
+            reusable = bitmap;
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    private static synchronized Bitmap takeReusable(int width, int height, Bitmap.Config config) {
+        if (!fits(reusable, width, height, config)) {
+            return null;
+        }
+        Bitmap bitmap = reusable;
+        reusable = null;
+        return bitmap;
+    }
+
+    private static boolean fits(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        return bitmap != null && !bitmap.isRecycled() && bitmap.isMutable()
+                && bitmap.getAllocationByteCount() >= (long) width * height * bytesPerPixel(config);
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565) {
+            return 2;
+        }
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
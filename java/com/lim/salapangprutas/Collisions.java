@@ -1,81 +1,375 @@
 package com.lim.salapangprutas;
 
-import java.util.ArrayList;
-
 public class Collisions {
 
+    // When false, the original all-pairs loop is used instead of the grid broadphase,
+    // so the two paths can be compared.
+    private static boolean broadphaseEnabled = true;
+
+    // Below this many objects the all-pairs loop is cheaper than building the grid.
+    private static final int BROADPHASE_MIN_OBJECTS = 16;
+
+    // When true, pairs that moved fast relative to each other during the tick are also
+    // swept from their previous positions, so they cannot pass through each other
+    // between two ticks. When false only the end-of-tick overlap is checked.
+    private static boolean sweptEnabled = true;
+
+    // A pair is swept when its relative movement in one tick is more than this fraction of
+    // the sum of the radii; slower pairs cannot meaningfully miss a contact.
+    private static final float SWEEP_MIN_FRACTION = 0.5f;
+
+    // Broadphase scratch state, reused every call. Collisions run on the game thread only.
+    private static final SpatialGrid grid = new SpatialGrid();
+    private static float[] centerX = new float[16];
+    private static float[] centerY = new float[16];
+    private static float[] radius = new float[16];
+    // Where each object is binned: its center, or the middle of its path when sweeping.
+    private static float[] binX = new float[16];
+    private static float[] binY = new float[16];
+
+    public static void setBroadphaseEnabled(boolean enabled) {
+        broadphaseEnabled = enabled;
+    }
+
+    public static boolean isBroadphaseEnabled() {
+        return broadphaseEnabled;
+    }
+
+    public static void setSweptEnabled(boolean enabled) {
+        sweptEnabled = enabled;
+    }
+
+    public static boolean isSweptEnabled() {
+        return sweptEnabled;
+    }
+
     /**
      * Checks and resolves collisions for all circles (fruits, flowers, and worms).
      * The bottom boundary is not handled (so objects that fall off remain removed in GamePanel).
      *
-     * @param squares      List of game objects.
+     * @param store        Game objects.
      * @param screenWidth  Screen width in pixels.
      * @param screenHeight Screen height in pixels.
+     * @return Number of colliding pairs that were resolved.
      */
-    public static void checkCollisions(ArrayList<rndSqr> squares, int screenWidth, int screenHeight) {
+    public static int checkCollisions(EntityStore store, int screenWidth, int screenHeight) {
+        int n = store.count();
+
         // --- Boundary Collisions (using circle centers) ---
-        for (rndSqr square : squares) {
-            float radius = square.size / 2f;
-            float centerX = square.pos.x + radius;
-            float centerY = square.pos.y + radius;
+        resolveBoundaries(store, 0, n, screenWidth);
+
+        // --- Inter-Object Collisions using circle collision detection ---
+        if (broadphaseEnabled && n >= BROADPHASE_MIN_OBJECTS) {
+            return checkPairsBroadphase(store, screenWidth, screenHeight);
+        }
+        return checkPairsBruteForce(store);
+    }
+
+    /**
+     * Bounces objects from..to-1 off the left, right and top edges. Each object is handled
+     * on its own, so ranges can be processed in parallel.
+     */
+    static void resolveBoundaries(EntityStore store, int from, int to, int screenWidth) {
+        float[] x = store.x;
+        float[] y = store.y;
+        float[] dx = store.dx;
+        float[] dy = store.dy;
+        int[] size = store.size;
+        for (int i = from; i < to; i++) {
+            float radius = size[i] / 2f;
+            float centerX = x[i] + radius;
+            float centerY = y[i] + radius;
 
             // Left boundary.
             if (centerX - radius < 0) {
-                square.pos.x = 0;
-                square.dx = Math.abs(square.dx);
+                x[i] = 0;
+                dx[i] = Math.abs(dx[i]);
             }
             // Right boundary.
             if (centerX + radius > screenWidth) {
-                square.pos.x = screenWidth - square.size;
-                square.dx = -Math.abs(square.dx);
+                x[i] = screenWidth - size[i];
+                dx[i] = -Math.abs(dx[i]);
             }
             // Top boundary.
             if (centerY - radius < 0) {
-                square.pos.y = 0;
-                square.dy = Math.abs(square.dy);
+                y[i] = 0;
+                dy[i] = Math.abs(dy[i]);
             }
             // Bottom boundary: intentionally do nothing.
         }
+    }
 
-        // --- Inter-Object Collisions using circle collision detection ---
-        int n = squares.size();
+    /**
+     * Tests every pair of objects. Kept as the reference path for the broadphase.
+     */
+    private static int checkPairsBruteForce(EntityStore store) {
+        int n = store.count();
+        int contacts = 0;
         for (int i = 0; i < n; i++) {
-            rndSqr a = squares.get(i);
             for (int j = i + 1; j < n; j++) {
-                rndSqr b = squares.get(j);
-
                 // If both objects are non-penalty (fruit/flower) and at least one is a flower (points == 5),
                 // skip collision processing.
-                if (!a.isPenalty() && !b.isPenalty() && (a.getPoints() == 5 || b.getPoints() == 5)) {
+                if (skipPair(store, i, j)) {
                     continue;
                 }
 
-                if (circlesOverlap(a, b)) {
+                if (circlesOverlap(store, i, j)) {
                     // Simple elastic collision: swap velocity vectors.
-                    float tempDx = a.dx;
-                    float tempDy = a.dy;
-                    a.dx = b.dx;
-                    a.dy = b.dy;
-                    b.dx = tempDx;
-                    b.dy = tempDy;
+                    swapVelocities(store, i, j);
 
                     // Adjust positions so the circles are no longer overlapping.
-                    resolveOverlap(a, b);
+                    resolveOverlap(store, i, j);
+                    contacts++;
+                } else if (sweptEnabled && sweepPair(store, i, j)) {
+                    contacts++;
                 }
             }
         }
+        return contacts;
+    }
+
+    /**
+     * Bins the objects into a grid whose cells are one object diameter wide and only tests
+     * pairs in the same or neighbouring cells. Centers and radii are computed once per call.
+     * When sweeping, objects are binned by the middle of their path this tick and the cells
+     * grow by the longest path, so pairs whose paths cross are still neighbours.
+     */
+    private static int checkPairsBroadphase(EntityStore store, int screenWidth, int screenHeight) {
+        int n = store.count();
+        if (centerX.length < n) {
+            int capacity = Math.max(n, centerX.length * 2);
+            centerX = new float[capacity];
+            centerY = new float[capacity];
+            radius = new float[capacity];
+            binX = new float[capacity];
+            binY = new float[capacity];
+        }
+
+        float cellSize = 1;
+        float maxPath = 0;
+        for (int i = 0; i < n; i++) {
+            float r = store.size[i] / 2f;
+            radius[i] = r;
+            centerX[i] = store.x[i] + r;
+            centerY[i] = store.y[i] + r;
+            cellSize = Math.max(cellSize, store.size[i]);
+            if (sweptEnabled) {
+                float pathX = store.x[i] - store.prevX[i];
+                float pathY = store.y[i] - store.prevY[i];
+                binX[i] = centerX[i] - pathX / 2;
+                binY[i] = centerY[i] - pathY / 2;
+                maxPath = Math.max(maxPath, (float) Math.sqrt(pathX * pathX + pathY * pathY));
+            }
+        }
+        if (sweptEnabled) {
+            grid.build(binX, binY, n, cellSize + maxPath, screenWidth, screenHeight);
+        } else {
+            grid.build(centerX, centerY, n, cellSize, screenWidth, screenHeight);
+        }
+
+        int contacts = 0;
+        for (int row = 0, rows = grid.getRows(); row < rows; row++) {
+            contacts += testRow(store, grid, row, centerX, centerY, radius);
+        }
+        return contacts;
+    }
+
+    /**
+     * Tests the pairs whose first object is binned in the given grid row: pairs inside a
+     * cell, and with the cells to the right and in the row below, so every pair of
+     * adjacent cells is visited exactly once over all rows. Only objects in this row and
+     * the next are touched, so rows two apart can be processed at the same time.
+     * Returns the number of colliding pairs.
+     */
+    static int testRow(EntityStore store, SpatialGrid grid, int row,
+                       float[] centerX, float[] centerY, float[] radius) {
+        int columns = grid.getColumns();
+        int rows = grid.getRows();
+        int contacts = 0;
+        for (int column = 0; column < columns; column++) {
+            int cell = row * columns + column;
+            int start = grid.cellStart(cell);
+            int end = grid.cellEnd(cell);
+            for (int k = start; k < end; k++) {
+                int i = grid.itemAt(k);
+                // Pairs inside the same cell.
+                for (int m = k + 1; m < end; m++) {
+                    if (testPair(store, i, grid.itemAt(m), centerX, centerY, radius)) {
+                        contacts++;
+                    }
+                }
+                // Half of the neighbouring cells (right, and the row below).
+                if (column + 1 < columns) {
+                    contacts += testCell(store, grid, i, cell + 1, centerX, centerY, radius);
+                }
+                if (row + 1 < rows) {
+                    int below = cell + columns;
+                    if (column > 0) {
+                        contacts += testCell(store, grid, i, below - 1, centerX, centerY, radius);
+                    }
+                    contacts += testCell(store, grid, i, below, centerX, centerY, radius);
+                    if (column + 1 < columns) {
+                        contacts += testCell(store, grid, i, below + 1, centerX, centerY, radius);
+                    }
+                }
+            }
+        }
+        return contacts;
+    }
+
+    private static int testCell(EntityStore store, SpatialGrid grid, int i, int cell,
+                                float[] centerX, float[] centerY, float[] radius) {
+        int contacts = 0;
+        int end = grid.cellEnd(cell);
+        for (int k = grid.cellStart(cell); k < end; k++) {
+            if (testPair(store, i, grid.itemAt(k), centerX, centerY, radius)) {
+                contacts++;
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Narrow-phase test for one candidate pair using the cached centers. Applies the same
+     * response as the brute-force path and keeps the cached centers in sync. Returns
+     * true if the pair collided.
+     */
+    private static boolean testPair(EntityStore store, int i, int j,
+                                    float[] centerX, float[] centerY, float[] radius) {
+        if (skipPair(store, i, j)) {
+            return false;
+        }
+
+        float dx = centerX[j] - centerX[i];
+        float dy = centerY[j] - centerY[i];
+        float distanceSquared = dx * dx + dy * dy;
+        float radiusSum = radius[i] + radius[j];
+        if (distanceSquared >= radiusSum * radiusSum) {
+            if (sweptEnabled && sweepPair(store, i, j)) {
+                centerX[i] = store.x[i] + radius[i];
+                centerY[i] = store.y[i] + radius[i];
+                centerX[j] = store.x[j] + radius[j];
+                centerY[j] = store.y[j] + radius[j];
+                return true;
+            }
+            return false;
+        }
+
+        swapVelocities(store, i, j);
+
+        float distance = (float) Math.sqrt(distanceSquared);
+        if (distance == 0) {
+            // Avoid division by zero.
+            dx = 1;
+            dy = 0;
+            distance = 1;
+        }
+        float overlap = radiusSum - distance;
+        float separationX = (dx / distance) * (overlap / 2);
+        float separationY = (dy / distance) * (overlap / 2);
+
+        store.x[i] -= separationX;
+        store.y[i] -= separationY;
+        store.x[j] += separationX;
+        store.y[j] += separationY;
+        centerX[i] -= separationX;
+        centerY[i] -= separationY;
+        centerX[j] += separationX;
+        centerY[j] += separationY;
+        return true;
+    }
+
+    /**
+     * Continuous check for a pair that does not overlap at the end of the tick. If the two
+     * moved fast enough relative to each other to have passed through one another, solves
+     * for the time of impact along their straight paths from the previous positions. On a
+     * hit both are moved back to the point of contact, their velocities are swapped as in
+     * the overlap response, and they travel the rest of the tick with the new velocities.
+     *
+     * @return True if the pair collided during the tick.
+     */
+    private static boolean sweepPair(EntityStore store, int i, int j) {
+        float radiusSum = (store.size[i] + store.size[j]) / 2f;
+        float pathIX = store.x[i] - store.prevX[i];
+        float pathIY = store.y[i] - store.prevY[i];
+        float pathJX = store.x[j] - store.prevX[j];
+        float pathJY = store.y[j] - store.prevY[j];
+
+        // Movement of j relative to i; only fast pairs are worth the sweep.
+        float relX = pathJX - pathIX;
+        float relY = pathJY - pathIY;
+        float a = relX * relX + relY * relY;
+        float minPath = radiusSum * SWEEP_MIN_FRACTION;
+        if (a <= minPath * minPath) {
+            return false;
+        }
+
+        // Offset between the centers at the start of the tick. Both objects share their
+        // corner-to-center offset at either end of the path, so corners work as well.
+        float startX = (store.prevX[j] + store.size[j] / 2f) - (store.prevX[i] + store.size[i] / 2f);
+        float startY = (store.prevY[j] + store.size[j] / 2f) - (store.prevY[i] + store.size[i] / 2f);
+        float b = startX * relX + startY * relY;
+        if (b >= 0) {
+            // Moving apart.
+            return false;
+        }
+        float c = startX * startX + startY * startY - radiusSum * radiusSum;
+        if (c < 0) {
+            // Already overlapping at the start; the overlap test owns that case.
+            return false;
+        }
+        // |start + rel * t| = radiusSum, with b halved: t = (-b - sqrt(b^2 - a*c)) / a.
+        float discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return false;
+        }
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        if (t < 0 || t > 1) {
+            return false;
+        }
+
+        float contactIX = store.prevX[i] + pathIX * t;
+        float contactIY = store.prevY[i] + pathIY * t;
+        float contactJX = store.prevX[j] + pathJX * t;
+        float contactJY = store.prevY[j] + pathJY * t;
+        swapVelocities(store, i, j);
+        float rest = 1 - t;
+        store.x[i] = contactIX + store.dx[i] * rest;
+        store.y[i] = contactIY + store.dy[i] * rest;
+        store.x[j] = contactJX + store.dx[j] * rest;
+        store.y[j] = contactJY + store.dy[j] * rest;
+        return true;
+    }
+
+    /**
+     * If both objects are non-penalty (fruit/flower) and at least one is a flower (points == 5),
+     * the pair does not collide.
+     */
+    private static boolean skipPair(EntityStore store, int i, int j) {
+        return !store.isPenalty(i) && !store.isPenalty(j)
+                && (store.points[i] == 5 || store.points[j] == 5);
+    }
+
+    // Simple elastic collision: swap velocity vectors.
+    private static void swapVelocities(EntityStore store, int i, int j) {
+        float tempDx = store.dx[i];
+        float tempDy = store.dy[i];
+        store.dx[i] = store.dx[j];
+        store.dy[i] = store.dy[j];
+        store.dx[j] = tempDx;
+        store.dy[j] = tempDy;
     }
 
     /**
      * Determines whether two circles overlap.
      */
-    private static boolean circlesOverlap(rndSqr a, rndSqr b) {
-        float radiusA = a.size / 2f;
-        float radiusB = b.size / 2f;
-        float centerAX = a.pos.x + radiusA;
-        float centerAY = a.pos.y + radiusA;
-        float centerBX = b.pos.x + radiusB;
-        float centerBY = b.pos.y + radiusB;
+    private static boolean circlesOverlap(EntityStore store, int a, int b) {
+        float radiusA = store.size[a] / 2f;
+        float radiusB = store.size[b] / 2f;
+        float centerAX = store.x[a] + radiusA;
+        float centerAY = store.y[a] + radiusA;
+        float centerBX = store.x[b] + radiusB;
+        float centerBY = store.y[b] + radiusB;
 
         float dx = centerAX - centerBX;
         float dy = centerAY - centerBY;
@@ -88,13 +382,13 @@ public class Collisions {
      * Resolves the overlap between two circles by pushing them apart along the line
      * connecting their centers.
      */
-    private static void resolveOverlap(rndSqr a, rndSqr b) {
-        float radiusA = a.size / 2f;
-        float radiusB = b.size / 2f;
-        float centerAX = a.pos.x + radiusA;
-        float centerAY = a.pos.y + radiusA;
-        float centerBX = b.pos.x + radiusB;
-        float centerBY = b.pos.y + radiusB;
+    private static void resolveOverlap(EntityStore store, int a, int b) {
+        float radiusA = store.size[a] / 2f;
+        float radiusB = store.size[b] / 2f;
+        float centerAX = store.x[a] + radiusA;
+        float centerAY = store.y[a] + radiusA;
+        float centerBX = store.x[b] + radiusB;
+        float centerBY = store.y[b] + radiusB;
 
         float dx = centerBX - centerAX;
         float dy = centerBY - centerAY;
@@ -111,9 +405,9 @@ public class Collisions {
         float separationX = (dx / distance) * (overlap / 2);
         float separationY = (dy / distance) * (overlap / 2);
 
-        a.pos.x -= separationX;
-        a.pos.y -= separationY;
-        b.pos.x += separationX;
-        b.pos.y += separationY;
+        store.x[a] -= separationX;
+        store.y[a] -= separationY;
+        store.x[b] += separationX;
+        store.y[b] += separationY;
     }
 }
@@ -0,0 +1,116 @@
+package com.lim.salapangprutas;
+
+import android.graphics.Rect;
+
+/**
+ * Tracks which part of the screen changed since the last presented frame, so the game
+ * thread can lock and redraw only that part of the surface. Each frame collects the
+ * bounds of everything drawn that may have moved or changed; the region to redraw is the
+ * union of those bounds with the previous frame's, which clears whatever moved away or
+ * disappeared. When the union covers more than a set fraction of the screen a partial
+ * redraw saves too little, and the whole frame is redrawn instead.
+ */
+public class DirtyRegion {
+
+    // Written by the UI thread when the surface changes, read by the game thread.
+    private volatile int screenWidth;
+    private volatile int screenHeight;
+    private volatile float fullRedrawFraction = 0.5f;
+    private volatile boolean fullRedraw = true;  // Nothing is on screen yet.
+
+    // Bounds collected for the frame being prepared, and for the last presented one.
+    // An empty rectangle has left >= right.
+    private int left, top, right, bottom;
+    private int prevLeft, prevTop, prevRight, prevBottom;
+
+    private long partialFrames = 0;
+    private long fullFrames = 0;
+
+    public void setScreenSize(int width, int height) {
+        this.screenWidth = width;
+        this.screenHeight = height;
+        invalidateAll();
+    }
+
+    /**
+     * Sets the fraction (0..1) of the screen area above which a full redraw is used.
+     */
+    public void setFullRedrawFraction(float fraction) {
+        this.fullRedrawFraction = fraction;
+    }
+
+    // Makes the next frame a full redraw, e.g. after the surface was recreated or a frame
+    // could not be presented.
+    public void invalidateAll() {
+        fullRedraw = true;
+    }
+
+    // Starts collecting bounds for a new frame.
+    public void begin() {
+        left = top = Integer.MAX_VALUE;
+        right = bottom = Integer.MIN_VALUE;
+    }
+
+    // Adds an area that is drawn in this frame. Rounded outwards to whole pixels.
+    public void add(float l, float t, float r, float b) {
+        left = Math.min(left, (int) Math.floor(l));
+        top = Math.min(top, (int) Math.floor(t));
+        right = Math.max(right, (int) Math.ceil(r));
+        bottom = Math.max(bottom, (int) Math.ceil(b));
+    }
+
+    /**
+     * Finishes the frame and writes the area to redraw into out. Returns out, or null if the
+     * whole screen has to be redrawn. Either way the collected bounds become the previous
+     * frame's bounds for the next call.
+     */
+    public Rect finish(Rect out) {
+        int l = Math.min(left, prevLeft);
+        int t = Math.min(top, prevTop);
+        int r = Math.max(right, prevRight);
+        int b = Math.max(bottom, prevBottom);
+        if (prevLeft >= prevRight) {
+            l = left;
+            t = top;
+            r = right;
+            b = bottom;
+        } else if (left >= right) {
+            l = prevLeft;
+            t = prevTop;
+            r = prevRight;
+            b = prevBottom;
+        }
+        prevLeft = left;
+        prevTop = top;
+        prevRight = right;
+        prevBottom = bottom;
+
+        l = Math.max(l, 0);
+        t = Math.max(t, 0);
+        r = Math.min(r, screenWidth);
+        b = Math.min(b, screenHeight);
+
+        long area = r > l && b > t ? (long) (r - l) * (b - t) : 0;
+        if (fullRedraw || area > (long) screenWidth * screenHeight * fullRedrawFraction) {
+            fullRedraw = false;
+            fullFrames++;
+            return null;
+        }
+        partialFrames++;
+        if (area == 0) {
+            // Nothing changed. Still lock one pixel, so the frame is paced like any other.
+            out.set(0, 0, 1, 1);
+        } else {
+            out.set(l, t, r, b);
+        }
+        return out;
+    }
+
+    public long getPartialFrames() {
+        return partialFrames;
+    }
+
+    public long getFullFrames() {
+        return fullFrames;
+    }
+}
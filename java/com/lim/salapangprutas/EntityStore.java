@@ -0,0 +1,329 @@
+package com.lim.salapangprutas;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Struct-of-arrays storage for every falling object (fruits, flowers and pests).
+ * Each property lives in its own primitive array indexed by entity, so the update,
+ * collision and hit-test loops walk contiguous memory instead of chasing object pointers.
+ * Removal swaps the last entity into the freed slot, so indexes are only stable until
+ * the next remove() call.
+ */
+public class EntityStore {
+
+    // Entity types. Pests are the penalty objects.
+    public static final int TYPE_FRUIT = 0;
+    public static final int TYPE_FLOWER = 1;
+    public static final int TYPE_PEST = 2;
+
+    // Ticks of past positions kept per entity for lag-compensated hit-testing.
+    public static final int HISTORY_TICKS = 4;
+
+    // Most entities readFrom() accepts: many times the 1000 a storm keeps in play, but small
+    // enough that a corrupt count fails with an IOException instead of running out of memory.
+    static final int MAX_READ_COUNT = 16 * 1024;
+
+    // Random stream for spawn directions and rotation speeds.
+    private final Random rnd;
+
+    // Position of the top-left corner of the circle's bounding box.
+    public float[] x;
+    public float[] y;
+    // Velocity in pixels per update.
+    public float[] dx;
+    public float[] dy;
+    // Rotation in degrees and degrees per update.
+    public float[] angle;
+    public float[] rotationSpeed;
+    // State before the last update, used to interpolate drawing between ticks.
+    public float[] prevX;
+    public float[] prevY;
+    public float[] prevAngle;
+    public int[] size;     // Diameter of the circle.
+    public int[] points;
+    public int[] type;     // One of the TYPE_ constants.
+    public int[] variant;  // Which image of its type the entity uses.
+    // Position at the end of each of the last HISTORY_TICKS ticks: entity i's position
+    // after tick t is at i * HISTORY_TICKS + t % HISTORY_TICKS. See recordHistory().
+    public float[] historyX;
+    public float[] historyY;
+
+    private int count = 0;
+
+    public EntityStore(int initialCapacity) {
+        this(initialCapacity, new Random());
+    }
+
+    public EntityStore(int initialCapacity, Random rnd) {
+        this.rnd = rnd;
+        allocate(Math.max(initialCapacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        dx = grow(dx, capacity);
+        dy = grow(dy, capacity);
+        angle = grow(angle, capacity);
+        rotationSpeed = grow(rotationSpeed, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        prevAngle = grow(prevAngle, capacity);
+        size = grow(size, capacity);
+        points = grow(points, capacity);
+        type = grow(type, capacity);
+        variant = grow(variant, capacity);
+        historyX = grow(historyX, capacity * HISTORY_TICKS);
+        historyY = grow(historyY, capacity * HISTORY_TICKS);
+    }
+
+    private static float[] grow(float[] old, int capacity) {
+        float[] larger = new float[capacity];
+        if (old != null) {
+            System.arraycopy(old, 0, larger, 0, old.length);
+        }
+        return larger;
+    }
+
+    private static int[] grow(int[] old, int capacity) {
+        int[] larger = new int[capacity];
+        if (old != null) {
+            System.arraycopy(old, 0, larger, 0, old.length);
+        }
+        return larger;
+    }
+
+    // Number of live entities; they occupy indexes 0..count()-1.
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Adds an entity with an explicit velocity and returns its index.
+     * The arrays may be reallocated, so re-read them after adding.
+     */
+    public int add(int type, int variant, float x, float y, int size, float dx, float dy, int points) {
+        if (count == this.x.length) {
+            allocate(count * 2);
+        }
+        int i = count++;
+        this.type[i] = type;
+        this.variant[i] = variant;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.size[i] = size;
+        this.dx[i] = dx;
+        this.dy[i] = dy;
+        this.points[i] = points;
+        // Initialize rotation speed to a random value between -5 and +5 degrees per update.
+        this.rotationSpeed[i] = (rnd.nextFloat() - 0.5f) * 10;
+        this.angle[i] = 0;
+        this.prevAngle[i] = 0;
+        this.prevX[i] = x;
+        this.prevY[i] = y;
+        // Until it has a history, the entity was where it was drawn first: at its spawn.
+        int base = i * HISTORY_TICKS;
+        for (int k = 0; k < HISTORY_TICKS; k++) {
+            historyX[base + k] = x;
+            historyY[base + k] = y;
+        }
+        return i;
+    }
+
+    /**
+     * Adds an entity falling at the given speed in a random downward direction
+     * (between 45 and 135 degrees) and returns its index.
+     */
+    public int addWithSpeed(int type, int variant, float x, float y, int size, int speed, int points) {
+        float dx = (float) (speed * Math.cos(Math.PI / 4 + rnd.nextFloat() * Math.PI / 2));
+        float dy = (float) (speed * Math.sin(Math.PI / 4 + rnd.nextFloat() * Math.PI / 2));
+        return add(type, variant, x, y, size, dx, dy, points);
+    }
+
+    /**
+     * Removes the entity at index i by moving the last entity into its slot.
+     */
+    public void remove(int i) {
+        int last = --count;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            dx[i] = dx[last];
+            dy[i] = dy[last];
+            angle[i] = angle[last];
+            rotationSpeed[i] = rotationSpeed[last];
+            prevX[i] = prevX[last];
+            prevY[i] = prevY[last];
+            prevAngle[i] = prevAngle[last];
+            size[i] = size[last];
+            points[i] = points[last];
+            type[i] = type[last];
+            variant[i] = variant[last];
+            System.arraycopy(historyX, last * HISTORY_TICKS, historyX, i * HISTORY_TICKS, HISTORY_TICKS);
+            System.arraycopy(historyY, last * HISTORY_TICKS, historyY, i * HISTORY_TICKS, HISTORY_TICKS);
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Moves and rotates every entity by one update.
+    public void updateAll() {
+        updateRange(0, count);
+    }
+
+    // Moves and rotates entities from..to-1. Entities are independent, so disjoint ranges
+    // can be updated in parallel.
+    public void updateRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            prevAngle[i] = angle[i];
+            x[i] += dx[i];
+            y[i] += dy[i];
+            angle[i] = (angle[i] + rotationSpeed[i]) % 360;
+        }
+    }
+
+    /**
+     * Stores every entity's current position as its position after the given tick. Called
+     * once at the end of each tick, after collisions.
+     */
+    public void recordHistory(long tick) {
+        int slot = (int) (tick % HISTORY_TICKS);
+        for (int i = 0; i < count; i++) {
+            historyX[i * HISTORY_TICKS + slot] = x[i];
+            historyY[i * HISTORY_TICKS + slot] = y[i];
+        }
+    }
+
+    /**
+     * Where entity i was lagTicks ticks before tick, the tick its current position is from,
+     * interpolated between ticks the way frames are drawn. Lags are clamped to the history
+     * kept, and to the start of the round.
+     */
+    public float historyX(int i, long tick, float lagTicks) {
+        return history(historyX, x[i], i, tick, lagTicks);
+    }
+
+    public float historyY(int i, long tick, float lagTicks) {
+        return history(historyY, y[i], i, tick, lagTicks);
+    }
+
+    private static float history(float[] history, float current, int i, long tick, float lagTicks) {
+        float lag = Math.min(lagTicks, Math.min(HISTORY_TICKS - 1, tick));
+        if (lag <= 0) {
+            return current;
+        }
+        // The two recorded ticks around tick - lag.
+        int back = (int) Math.ceil(lag);
+        float fraction = back - lag;  // Of the way from the older tick to the newer one.
+        long older = tick - back;
+        int base = i * HISTORY_TICKS;
+        float from = history[base + (int) (older % HISTORY_TICKS)];
+        float to = back == 1 ? current : history[base + (int) ((older + 1) % HISTORY_TICKS)];
+        return from + (to - from) * fraction;
+    }
+
+    public boolean isPenalty(int i) {
+        return type[i] == TYPE_PEST;
+    }
+
+    // True if any fruit or flower (non-penalty object) is still in play.
+    public boolean hasPointEntities() {
+        for (int i = 0; i < count; i++) {
+            if (type[i] != TYPE_PEST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the point lies inside the entity's circle, plus a 10 px buffer for touches.
+     */
+    public boolean contains(int i, float px, float py) {
+        float radius = size[i] / 2f;
+        float diffX = px - (x[i] + radius);
+        float diffY = py - (y[i] + radius);
+        float reach = radius + 10;
+        return (diffX * diffX + diffY * diffY) <= reach * reach;
+    }
+
+    /**
+     * Writes every live entity: nine floats of motion state, then size, points, type and
+     * variant in the narrowest type that holds them, then the position history (74 bytes
+     * per entity).
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeFloat(x[i]);
+            out.writeFloat(y[i]);
+            out.writeFloat(dx[i]);
+            out.writeFloat(dy[i]);
+            out.writeFloat(angle[i]);
+            out.writeFloat(rotationSpeed[i]);
+            out.writeFloat(prevX[i]);
+            out.writeFloat(prevY[i]);
+            out.writeFloat(prevAngle[i]);
+            out.writeShort(size[i]);
+            out.writeShort(points[i]);
+            out.writeByte(type[i]);
+            out.writeByte(variant[i]);
+            for (int k = i * HISTORY_TICKS, end = k + HISTORY_TICKS; k < end; k++) {
+                out.writeFloat(historyX[k]);
+                out.writeFloat(historyY[k]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents with entities written by writeTo(). Entities the renderer could
+     * not draw are rejected, so a corrupt snapshot fails here rather than in every frame.
+     *
+     * @param variantCounts Number of images per entity type, indexed by type.
+     */
+    public void readFrom(DataInput in, int[] variantCounts) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > MAX_READ_COUNT) {
+            throw new IOException("Bad entity count " + n);
+        }
+        if (n > x.length) {
+            allocate(n);
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] = in.readFloat();
+            y[i] = in.readFloat();
+            dx[i] = in.readFloat();
+            dy[i] = in.readFloat();
+            angle[i] = in.readFloat();
+            rotationSpeed[i] = in.readFloat();
+            prevX[i] = in.readFloat();
+            prevY[i] = in.readFloat();
+            prevAngle[i] = in.readFloat();
+            size[i] = in.readShort();
+            points[i] = in.readShort();
+            type[i] = in.readByte();
+            variant[i] = in.readByte();
+            if (type[i] < TYPE_FRUIT || type[i] > TYPE_PEST) {
+                throw new IOException("Entity " + i + " has unknown type " + type[i]);
+            }
+            if (variant[i] < 0 || variant[i] >= variantCounts[type[i]]) {
+                throw new IOException("Entity " + i + " has unknown variant " + variant[i]);
+            }
+            if (size[i] <= 0) {
+                throw new IOException("Entity " + i + " has size " + size[i]);
+            }
+            for (int k = i * HISTORY_TICKS, end = k + HISTORY_TICKS; k < end; k++) {
+                historyX[k] = in.readFloat();
+                historyY[k] = in.readFloat();
+            }
+        }
+        count = n;
+    }
+}
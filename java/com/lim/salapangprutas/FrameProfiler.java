@@ -0,0 +1,158 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase frame timing and jank counters. The game thread records how long each phase
+ * of a frame took, the interval between frames and how many entities were on screen;
+ * everything goes into preallocated Histograms, so recording is allocation-free and can
+ * stay on in production builds. Reports are produced on demand by the debug overlay or
+ * dump().
+ */
+public class FrameProfiler {
+
+    // Simulation phases, recorded by GameSimulation.
+    public static final int PHASE_INPUT = 0;       // Applying touches.
+    public static final int PHASE_UPDATE = 1;      // Moving entities and removing fallen ones.
+    public static final int PHASE_COLLISIONS = 2;  // Collisions.checkCollisions.
+    // Presentation phases, recorded by GameThread.
+    public static final int PHASE_LOCK_CANVAS = 3; // Waiting in holder.lockCanvas().
+    public static final int PHASE_RENDER = 4;      // Drawing the frame.
+    public static final int PHASE_POST = 5;        // holder.unlockCanvasAndPost().
+    public static final int PHASE_COUNT = 6;
+
+    private static final String[] PHASE_NAMES = {
+            "input", "update", "collisions", "lockCanvas", "render", "post"
+    };
+
+    private final Histogram[] phases = new Histogram[PHASE_COUNT];
+    private final Histogram frameIntervals = new Histogram();
+    private final Histogram entityCounts = new Histogram();
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong jankFrames = new AtomicLong();
+    private final AtomicLong severeJankFrames = new AtomicLong();
+    private volatile long targetFrameNanos = 16_666_667L; // 60 Hz until told otherwise.
+    private volatile int lastEntityCount = 0;
+
+    public FrameProfiler() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    public static String phaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Sets the display's frame period. Frames taking more than 1.5x this count as jank,
+     * more than 3x as severe jank.
+     */
+    public void setTargetFrameNanos(long targetFrameNanos) {
+        this.targetFrameNanos = targetFrameNanos;
+    }
+
+    public long getTargetFrameNanos() {
+        return targetFrameNanos;
+    }
+
+    public void record(int phase, long nanos) {
+        phases[phase].record(nanos);
+    }
+
+    /**
+     * Records one presented frame: the time since the previous frame and the number of
+     * entities it showed.
+     */
+    public void recordFrame(long intervalNanos, int entityCount) {
+        frames.incrementAndGet();
+        frameIntervals.record(intervalNanos);
+        entityCounts.record(entityCount);
+        lastEntityCount = entityCount;
+        long target = targetFrameNanos;
+        if (intervalNanos * 2 > target * 3) {
+            jankFrames.incrementAndGet();
+            if (intervalNanos > target * 3) {
+                severeJankFrames.incrementAndGet();
+            }
+        }
+    }
+
+    public Histogram getPhase(int phase) {
+        return phases[phase];
+    }
+
+    public Histogram getFrameIntervals() {
+        return frameIntervals;
+    }
+
+    public Histogram getEntityCounts() {
+        return entityCounts;
+    }
+
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    public long getJankCount() {
+        return jankFrames.get();
+    }
+
+    public long getSevereJankCount() {
+        return severeJankFrames.get();
+    }
+
+    public int getLastEntityCount() {
+        return lastEntityCount;
+    }
+
+    public void reset() {
+        for (Histogram phase : phases) {
+            phase.reset();
+        }
+        frameIntervals.reset();
+        entityCounts.reset();
+        frames.set(0);
+        jankFrames.set(0);
+        severeJankFrames.set(0);
+    }
+
+    /**
+     * Writes a plain-text report: one line per phase plus frame interval, jank and
+     * entity-count summaries. Times are in microseconds.
+     */
+    public void dump(Writer out) throws IOException {
+        out.write(String.format(Locale.US, "frames=%d jank=%d severeJank=%d targetFrameUs=%d%n",
+                getFrameCount(), getJankCount(), getSevereJankCount(), targetFrameNanos / 1000));
+        out.write(String.format(Locale.US, "%-12s %8s %8s %8s %8s %8s %8s%n",
+                "phase", "count", "meanUs", "p50Us", "p90Us", "p99Us", "maxUs"));
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            writeTimes(out, PHASE_NAMES[i], phases[i]);
+        }
+        writeTimes(out, "frame", frameIntervals);
+        out.write(String.format(Locale.US, "entities     mean=%d p50=%d p99=%d max=%d%n",
+                entityCounts.getMean(), entityCounts.getPercentile(50),
+                entityCounts.getPercentile(99), entityCounts.getMax()));
+        out.flush();
+    }
+
+    private static void writeTimes(Writer out, String name, Histogram histogram) throws IOException {
+        out.write(String.format(Locale.US, "%-12s %8d %8d %8d %8d %8d %8d%n", name,
+                histogram.getCount(), histogram.getMean() / 1000,
+                histogram.getPercentile(50) / 1000, histogram.getPercentile(90) / 1000,
+                histogram.getPercentile(99) / 1000, histogram.getMax() / 1000));
+    }
+
+    // Writes the report to a file, replacing it. Call off the game thread.
+    public void dump(File file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            dump(out);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.lim.salapangprutas;
+
+/**
+ * Time source for the game loop. The simulation itself only ever sees the time deltas it
+ * is stepped with, so swapping the clock (or stepping by hand) makes a session reproducible.
+ */
+public interface GameClock {
+
+    // Monotonic wall clock used on the device.
+    GameClock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
@@ -2,50 +2,127 @@ package com.lim.salapangprutas;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.PointF;
-import android.os.Handler;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.util.Log;
+import android.view.Display;
 import android.view.Gravity;
-import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
-import android.view.View;
 import android.widget.Button;
-import android.widget.FrameLayout;
-import android.widget.ImageButton;
-import android.widget.TextView;
 import android.graphics.Color;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
+public class GamePanel extends SurfaceView implements SurfaceHolder.Callback,
+        GameSimulation.Listener, QualityGovernor.Listener {
 
     private SurfaceHolder holder;
-    private ArrayList<rndSqr> squares = new ArrayList<>();
-    private Random rnd = new Random();
-    private boolean running = true;
-    private Handler handler = new Handler();
-    private int score = 0;
-    private int lives = 3;
-    // Wave parameters
-    private int squaresPerWave = 3;
-    private int waveSpeed = 20;  // Constant fast speed throughout the game.
-    private int waveCount = 0;
-    // Initial pest probability: 15%
-    private double pestProbability = 0.15;
-
-    private long gameStartTime;
-    private long gameDuration = 2 * 60 * 1000; // 2 minutes
-    private Bitmap background;
+    // Game rules and state; this view only feeds it input and draws it.
+    private GameSimulation simulation;
+    private rndSqr cursor;  // Reused view for drawing entities.
+    private GameThread gameThread;
+    private boolean surfaceReady = false;  // UI thread only.
+    private boolean paused = false;        // UI thread only.
+
+    // The unfinished round, saved on pause so it survives the process being killed.
+    private static final String SNAPSHOT_FILE = "round_snapshot.bin";
+    // Writes and deletes the snapshot file in order, off the UI thread.
+    private final ExecutorService snapshotIo = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SnapshotIo");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FrameProfiler profiler = new FrameProfiler();
+
+    // Debug overlay with live frame timings. The text is refreshed twice a second so the
+    // overlay itself barely shows up in the numbers it reports.
+    private static final long OVERLAY_REFRESH_NANOS = 500_000_000L;
+    private static final float OVERLAY_LINE_HEIGHT = 34;
+    private volatile boolean debugOverlayEnabled = false;
+    private Paint overlayPaint;
+    private Paint overlayBackgroundPaint;
+    private final String[] overlayLines = new String[FrameProfiler.PHASE_COUNT + 4];
+    private long overlayUpdatedAt = 0;
 
-    private int[] imageResources = {
+    private Bitmap background;
+    private SpriteCache sprites;
+    private SoundManager sounds;
+    private AssetPreloader preloader;
+    private ScoreStore scores;
+    // Scaled sprites per entity type, indexed by variant. Filled from the SpriteCache.
+    private final Bitmap[][] spriteTables = new Bitmap[3][];
+
+    // Optional pre-rotated sprite frames; null rotates the canvas per object instead.
+    // Compare the two with the render phase of the profiler.
+    private static final int ROTATION_STEPS = 32;
+    private static final long ROTATION_BUDGET_BYTES = 16L * 1024 * 1024;
+    private volatile RotationCache rotations;
+
+    // Objects kept falling in the harvest storm stress mode.
+    private static final int STORM_OBJECTS = 1000;
+
+    // Screen area changed since the last presented frame; see prepareFrame().
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private final RectF drawBounds = new RectF();
+
+    // Score, lives and timer, cached as bitmaps between value changes.
+    private HudLayer hud;
+    private long hudUpdatedAt;
+
+    // Lowers rendering quality when frames are missed; see QualityGovernor for the levels.
+    private final QualityGovernor quality = new QualityGovernor();
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Surface resolution relative to the view, set when the surface changes. The
+    // simulation and the dirty region always work in view pixels.
+    private volatile float renderScale = 1f;
+    private float preparedScale = 1f;  // Scale prepareFrame() converted the region with.
+    private final Rect viewDirty = new Rect();
+
+    // Touch segments queued by onTouchEvent (UI thread) and handed to the simulation by
+    // update() (game thread). The queue is lock-free, so neither side waits on the other.
+    private final TouchQueue touchQueue = new TouchQueue();
+    // Everything each round fed the simulation, for replaying it off-device; see
+    // SessionReplayer. Game thread only.
+    private final SessionRecorder recorder = new SessionRecorder();
+    // Gameplay events of the round, written to files/telemetry.bin in the background.
+    // Recorded on the game thread only.
+    private final Telemetry telemetry;
+    private boolean roundLogged = false;  // Whether the round's start is in the telemetry.
+    private final TouchBuffer frameTouches = new TouchBuffer();
+    // From the MotionEvent of a hit to its sound and its first frame. Game thread only.
+    private final TouchLatency latency = new TouchLatency();
+    // The last frames posted and the game time each showed, in ticks, so a touch can be
+    // tested against what was on screen when it was made. Game thread only.
+    private static final int POSTED_FRAMES = 8;
+    private final long[] postedNanos = new long[POSTED_FRAMES];
+    private final float[] postedViewTicks = new float[POSTED_FRAMES];
+    private int postedCount = 0;
+    private float renderedViewTicks;  // Game time of the frame being drawn.
+    private boolean lagCompensationEnabled = true;
+    // Last sample of the current stroke; UI thread only.
+    private float lastTouchX;
+    private float lastTouchY;
+
+    private static final int[] FRUIT_RESOURCES = {
             R.drawable.banana,
             R.drawable.apple,
             R.drawable.cherry,
@@ -57,250 +134,787 @@ public class GamePanel extends SurfaceView implements SurfaceHolder.Callback {
     };
 
     // Replace the single penalty image with an array for pests.
-    private int[] pestImageResources = {
+    private static final int[] PEST_RESOURCES = {
             R.drawable.pest1, // Ensure these resources exist or rename accordingly.
             R.drawable.pest2,
             R.drawable.pest3
     };
 
     // Array of flower images (the +5 object)
-    private int[] flowerImageResource = {
+    private static final int[] FLOWER_RESOURCES = {
             R.drawable.flower1,
             R.drawable.flower2,
             R.drawable.flower3
     };
 
+    // Resource ids per entity type, indexed like EntityStore.TYPE_FRUIT/FLOWER/PEST.
+    // Package-private so AssetPreloader can decode them ahead of the game.
+    static final int[][] SPRITE_RESOURCES = {
+            FRUIT_RESOURCES, FLOWER_RESOURCES, PEST_RESOURCES
+    };
+
     public GamePanel(Context context) {
         super(context);
         holder = getHolder();
         holder.addCallback(this);
-        background = BitmapFactory.decodeResource(getResources(), R.drawable.background);
-        SoundManager.getInstance(getContext()).pauseGameOverSfx();
+        preloader = AssetPreloader.getInstance(context);
+        preloader.onGameStarted();
+        sprites = SpriteCache.getInstance(context);
+        telemetry = new Telemetry(new File(context.getFilesDir(), "telemetry.bin"));
+
+        simulation = new GameSimulation(new Random().nextLong(),
+                FRUIT_RESOURCES.length, FLOWER_RESOURCES.length, PEST_RESOURCES.length);
+        simulation.setListener(this);
+        simulation.setProfiler(profiler);
+        quality.setListener(this);
+        cursor = new rndSqr(simulation.getStore());
+        Log.d("GamePanel", "Session seed " + simulation.getSeed());
+        for (int type = 0; type < spriteTables.length; type++) {
+            spriteTables[type] = new Bitmap[SPRITE_RESOURCES[type].length];
+        }
+
+        hud = new HudLayer();
+
+        overlayPaint = new Paint();
+        overlayPaint.setColor(Color.WHITE);
+        overlayPaint.setTextSize(28);
+        overlayBackgroundPaint = new Paint();
+        overlayBackgroundPaint.setColor(0x99000000);
+        sounds = SoundManager.getInstance(getContext());
+        sounds.pauseGameOverSfx();
+        scores = ScoreStore.getInstance(getContext().getFilesDir());
     }
 
     /**
-     * Spawns waves of objects. When there are no non-penalty (point-giving) objects
-     * on screen, a new wave is spawned.
+     * Starts the game loop thread. The loop calls update() and render() once per
+     * displayed frame.
      */
     private void startWaves() {
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (!running) return; // Exit if game is over
-
-                long elapsedTime = System.currentTimeMillis() - gameStartTime;
-                if (elapsedTime >= gameDuration || lives <= 0) {
-                    running = false;
-                    handler.removeCallbacksAndMessages(null);
-                    showGameOverScreen(); // Call game over screen
-                    return;
-                }
+        // The first frames after a (re)start include the thread's start-up.
+        quality.resetWindow();
+        telemetry.resume();
+        gameThread = new GameThread(holder, this, GameClock.SYSTEM, profiler);
+        gameThread.setRunning(true);
+        gameThread.start();
+    }
 
-                // If no point-giving (non-penalty) objects are present, spawn a new wave.
-                if (squares.stream().noneMatch(rndSqr::isPointSquare)) {
-                    spawnWave(squaresPerWave, waveSpeed);
-                    // Increase base speed by 2.5 every wave.
-                    waveSpeed += 2.5;
-                    waveCount++;
+    /**
+     * Starts a new round in this panel without recreating anything: the simulation is reset
+     * in place with a fresh seed, and the surface, sprites, background and sounds all stay
+     * loaded, so the first frame of the new round is the next frame the loop draws.
+     * Call on the UI thread once the previous round is over.
+     */
+    public void restart() {
+        if (gameThread != null) {
+            // The loop has already left after the game over; this only waits for it.
+            gameThread.shutdown();
+            gameThread = null;
+        }
+        preloader.onGameStarted();
+        simulation.reset(new Random().nextLong());
+        Log.d("GamePanel", "Session seed " + simulation.getSeed());
+        roundLogged = false;
+        // Drop touches made on the game-over screen. With the loop stopped, this thread is
+        // the queue's only consumer.
+        while (touchQueue.drainTo(frameTouches) > 0) {
+            frameTouches.clear();
+        }
+        frameTouches.clear();
+        postedCount = 0;
+        profiler.reset();
+        latency.reset();
+        hud.invalidate();
+        dirtyRegion.invalidateAll();
+
+        sounds.pauseGameOverSfx();
+        sounds.startBgm();
+        if (surfaceReady) {
+            startWaves();
+        }
+    }
 
-                    // Every 3 waves, increase the number of objects per wave by 2 (capped at 8).
-                    if (waveCount % 3 == 0) {
-                        squaresPerWave = Math.min(squaresPerWave + 2, 8);
-                    }
+    /**
+     * Steps the simulation by the elapsed frame time, applying the touches queued since
+     * the last frame. Runs on the game thread.
+     */
+    void update(long frameNanos) {
+        frameTouches.clear();
+        touchQueue.drainTo(frameTouches);
+        if (!recorder.isRecording() && simulation.getElapsedMillis() == 0) {
+            // First frame of a round; the previous round's recording was finished at its
+            // game over. A round restored from a snapshot is not recorded.
+            recorder.begin(simulation);
+        }
+        if (!roundLogged) {
+            long seed = simulation.getSeed();
+            telemetry.record(Telemetry.EVENT_ROUND_START, simulation.getElapsedMillis(),
+                    (int) (seed >>> 32), (int) seed);
+            roundLogged = true;
+        }
+        if (lagCompensationEnabled) {
+            compensateLag(frameTouches);
+        }
+        recorder.recordStep(simulation, frameNanos, frameTouches);
+        simulation.step(frameNanos, frameTouches);
+        if (frameTouches.count() > 0) {
+            // Plays the taps queued during the step in one go.
+            sounds.flushSfx();
+            latency.onAudioQueued(System.nanoTime());
+        }
+    }
 
-                    // Every wave, increase pest spawn probability by 0.2% (0.002), capped at 50%.
-                    pestProbability = Math.min(pestProbability + 0.002, 0.5);
+    /**
+     * Sets each touch's lag: how many ticks behind the simulation the frame on screen when
+     * the touch was made was. The frame is taken to be on screen from a frame after its
+     * post, the earliest the display can show it. The lag is recorded with the touch, so a
+     * replay hit-tests exactly as the round did.
+     */
+    private void compensateLag(TouchBuffer touches) {
+        long showDelay = profiler.getTargetFrameNanos();
+        float tick = simulation.getTickCount();
+        for (int t = 0, n = touches.count(); t < n; t++) {
+            long eventNanos = touches.eventNanos(t);
+            if (eventNanos == 0) {
+                continue;
+            }
+            // Newest first; frames are posted in time order.
+            for (int k = postedCount - 1; k >= Math.max(0, postedCount - POSTED_FRAMES); k--) {
+                int slot = k % POSTED_FRAMES;
+                if (postedNanos[slot] + showDelay <= eventNanos) {
+                    float lag = tick - postedViewTicks[slot];
+                    touches.setLagTicks(t, Math.max(0, Math.min(EntityStore.HISTORY_TICKS - 1, lag)));
+                    break;
                 }
+            }
+        }
+    }
 
-                updateSquares();
-                render();
-                handler.postDelayed(this, 50);
+    // On by default; off tests touches against the objects' latest positions.
+    public void setLagCompensationEnabled(boolean enabled) {
+        lagCompensationEnabled = enabled;
+    }
+
+    /**
+     * Returns the sprite for an entity type and variant, fetching it from the SpriteCache
+     * the first time it is needed.
+     */
+    private Bitmap spriteFor(int type, int variant, int size) {
+        Bitmap image = spriteTables[type][variant];
+        if (image == null || image.getWidth() != size) {
+            RotationCache frames = rotations;
+            if (image != null && frames != null) {
+                // Frames are keyed on the bitmap, so the old size's would never be used again.
+                frames.remove(image);
             }
-        }, 50);
+            image = sprites.get(SPRITE_RESOURCES[type][variant], size);
+            spriteTables[type][variant] = image;
+        }
+        return image;
     }
 
     /**
-     * Spawns a wave of objects.
-     * For each of the numSquares:
-     * - With probability based on pestProbability, a penalty (pest) is spawned.
-     * - Otherwise, a non-penalty is spawned:
-     *    • 10% chance for a flower (worth +5)
-     *    • Otherwise a fruit (worth +1)
+     * Works out which part of the screen the next frame changes: the entities where they
+     * were last drawn and where they will be drawn now, HUD items whose value changed and
+     * the debug overlay. Returns out set to that area, or null when the frame should be
+     * redrawn in full. Runs on the game thread, after update() and before render().
      */
-    private void spawnWave(int numSquares, int speed) {
-        for (int i = 0; i < numSquares; i++) {
-            int x = rnd.nextInt(getWidth() - 100);
-            x = Math.max(x, 0);
-            PointF pos = new PointF(x, 0);
-            int size = 150;
-            // Use pestProbability for penalty decision.
-            boolean isPenalty = (rnd.nextDouble() < pestProbability);
-            Bitmap image;
-            if (isPenalty) {
-                // Randomize pest image from the pestImageResources array.
-                int pestIndex = rnd.nextInt(pestImageResources.length);
-                image = BitmapFactory.decodeResource(getResources(), pestImageResources[pestIndex]);
-                // Make pests fall 1.5 times faster than the base speed.
-                squares.add(new rndSqr(pos, size, image, 0, (int)(speed * 1.5), true));
-            } else {
-                // For non-penalty objects, choose between fruit and flower.
-                if (rnd.nextDouble() < 0.1) { // 10% chance for a flower
-                    int flowerIndex = rnd.nextInt(flowerImageResource.length);
-                    image = BitmapFactory.decodeResource(getResources(), flowerImageResource[flowerIndex]);
-                    rndSqr obj = new rndSqr(pos, size, image, speed);
-                    obj.setPoints(5); // Flower awards +5 points.
-                    squares.add(obj);
-                } else { // Otherwise, spawn a fruit.
-                    int imageResId = imageResources[rnd.nextInt(imageResources.length)];
-                    image = BitmapFactory.decodeResource(getResources(), imageResId);
-                    rndSqr obj = new rndSqr(pos, size, image, speed);
-                    obj.setPoints(1); // Fruit awards +1 point.
-                    squares.add(obj);
+    Rect prepareFrame(Rect out) {
+        EntityStore store = simulation.getStore();
+        float alpha = simulation.getInterpolationAlpha();
+
+        dirtyRegion.begin();
+        for (int i = 0, n = store.count(); i < n; i++) {
+            cursor.moveTo(i).getDrawBounds(alpha, drawBounds);
+            dirtyRegion.add(drawBounds.left, drawBounds.top, drawBounds.right, drawBounds.bottom);
+        }
+        long now = System.nanoTime();
+        if (now - hudUpdatedAt >= quality.getHudRefreshNanos()) {
+            hudUpdatedAt = now;
+            // The storm has no time limit; its timer counts up instead.
+            long shownMillis = simulation.isStorm()
+                    ? simulation.getElapsedMillis() : simulation.getRemainingMillis();
+            hud.update(simulation.getScore(), simulation.getLives(), shownMillis, getWidth(),
+                    dirtyRegion);
+        }
+        if (debugOverlayEnabled) {
+            dirtyRegion.add(0, overlayTop() - OVERLAY_LINE_HEIGHT, getWidth() * 0.7f, getHeight());
+        }
+        Rect region = dirtyRegion.finish(out);
+        preparedScale = renderScale;
+        if (region != null && preparedScale != 1f) {
+            // lockCanvas takes surface pixels.
+            scaleOutwards(region, preparedScale);
+        }
+        return region;
+    }
+
+    // Scales r by scale, rounding outwards so it still covers the same area.
+    private static void scaleOutwards(Rect r, float scale) {
+        r.set((int) Math.floor(r.left * scale), (int) Math.floor(r.top * scale),
+                (int) Math.ceil(r.right * scale), (int) Math.ceil(r.bottom * scale));
+    }
+
+    // Makes the next frame a full redraw, e.g. because the last one was never presented.
+    void invalidateFrame() {
+        dirtyRegion.invalidateAll();
+    }
+
+    /**
+     * Draws one frame, interpolated between the last two simulation ticks. Runs on the
+     * game thread, which owns the canvas.
+     *
+     * @param dirty The locked part of the surface, in surface pixels, or null if the whole
+     *              surface is locked. Everything outside it still shows the previous frame.
+     */
+    void render(Canvas c, Rect dirty) {
+        EntityStore store = simulation.getStore();
+        float alpha = simulation.getInterpolationAlpha();
+        // Frames show the state between the last two ticks.
+        renderedViewTicks = Math.max(0, simulation.getTickCount() - 1 + alpha);
+        RotationCache frames = rotations;
+        Paint paint = quality.isFilteringEnabled() ? filterPaint : null;
+        boolean rotate = quality.isRotationEnabled();
+
+        // The surface may be smaller than the view; everything is drawn in view pixels.
+        float scale = getWidth() > 0 ? c.getWidth() / (float) getWidth() : 1f;
+        if (scale != preparedScale) {
+            // The surface was resized after prepareFrame(); the region does not match the
+            // screen, so the next frame redraws everything.
+            dirtyRegion.invalidateAll();
+        }
+        c.save();
+        if (scale != 1f) {
+            c.scale(scale, scale);
+            if (dirty != null) {
+                viewDirty.set(dirty);
+                scaleOutwards(viewDirty, 1f / scale);
+                dirty = viewDirty;
+            }
+        }
+
+        if (dirty != null) {
+            // The background is screen-sized, so the same rectangle is source and destination.
+            c.drawBitmap(background, dirty, dirty, paint);
+        } else {
+            c.drawBitmap(background, 0, 0, paint);
+        }
+        for (int i = 0, n = store.count(); i < n; i++) {
+            cursor.moveTo(i);
+            if (dirty != null) {
+                // Skip entities entirely outside the locked area; the canvas would clip
+                // them anyway, but only after setting up the draw.
+                cursor.getDrawBounds(alpha, drawBounds);
+                if (drawBounds.right < dirty.left || drawBounds.left > dirty.right
+                        || drawBounds.bottom < dirty.top || drawBounds.top > dirty.bottom) {
+                    continue;
                 }
             }
+            Bitmap image = spriteFor(store.type[i], store.variant[i], store.size[i]);
+            if (rotate) {
+                cursor.draw(c, image, alpha, frames, paint);
+            } else {
+                cursor.drawUpright(c, image, alpha, paint);
+            }
+        }
+
+        hud.draw(c, getWidth());
+
+        if (debugOverlayEnabled) {
+            drawDebugOverlay(c);
+        }
+        c.restore();
+    }
+
+    /**
+     * Draws per-phase p50/p99 timings, frame interval and jank counts in the bottom-left
+     * corner.
+     */
+    private void drawDebugOverlay(Canvas c) {
+        long now = System.nanoTime();
+        if (overlayLines[0] == null || now - overlayUpdatedAt >= OVERLAY_REFRESH_NANOS) {
+            overlayUpdatedAt = now;
+            for (int phase = 0; phase < FrameProfiler.PHASE_COUNT; phase++) {
+                Histogram h = profiler.getPhase(phase);
+                overlayLines[phase] = FrameProfiler.phaseName(phase) + " p50 "
+                        + h.getPercentile(50) / 1000 + "us p99 " + h.getPercentile(99) / 1000 + "us";
+            }
+            Histogram frames = profiler.getFrameIntervals();
+            overlayLines[FrameProfiler.PHASE_COUNT] = "frame p50 " + frames.getPercentile(50) / 1000
+                    + "us p99 " + frames.getPercentile(99) / 1000 + "us";
+            overlayLines[FrameProfiler.PHASE_COUNT + 1] = "jank " + profiler.getJankCount()
+                    + "/" + profiler.getFrameCount() + " severe " + profiler.getSevereJankCount()
+                    + " entities " + profiler.getLastEntityCount();
+            overlayLines[FrameProfiler.PHASE_COUNT + 2] = "quality "
+                    + QualityGovernor.levelName(quality.getLevel()) + " down "
+                    + quality.getDowngradeCount() + " up " + quality.getUpgradeCount();
+            // Touch to hit / sound / posted frame, p50/p95/p99.
+            overlayLines[FrameProfiler.PHASE_COUNT + 3] = latency.summary();
+        }
+
+        float top = overlayTop();
+        c.drawRect(0, top - OVERLAY_LINE_HEIGHT, getWidth() * 0.7f, getHeight(), overlayBackgroundPaint);
+        for (int i = 0; i < overlayLines.length; i++) {
+            c.drawText(overlayLines[i], 20, top + i * OVERLAY_LINE_HEIGHT, overlayPaint);
+        }
+    }
+
+    // Baseline of the first overlay line.
+    private float overlayTop() {
+        return getHeight() - OVERLAY_LINE_HEIGHT * overlayLines.length - 20;
+    }
+
+    public void setDebugOverlayEnabled(boolean enabled) {
+        debugOverlayEnabled = enabled;
+        // Turning the overlay off has to paint over it.
+        dirtyRegion.invalidateAll();
+    }
+
+    // Dirty-rectangle statistics: how many frames were redrawn partially and in full.
+    public DirtyRegion getDirtyRegion() {
+        return dirtyRegion;
+    }
+
+    /**
+     * Switches between normal rounds and the endless harvest storm, whose movement and
+     * collisions run on every core. Call before the round starts or between rounds.
+     */
+    public void setStormMode(boolean storm) {
+        simulation.setStormObjects(storm ? STORM_OBJECTS : 0);
+        simulation.setParallelism(storm ? Runtime.getRuntime().availableProcessors() : 0);
+    }
+
+    /**
+     * Switches between pre-rotated sprite frames and per-object canvas rotation. Frames are
+     * quantized to ROTATION_STEPS angles and limited to ROTATION_BUDGET_BYTES; see
+     * setRotationCache() for other settings.
+     */
+    public void setRotationCacheEnabled(boolean enabled) {
+        setRotationCache(enabled ? new RotationCache(ROTATION_STEPS, ROTATION_BUDGET_BYTES) : null);
+    }
+
+    // Uses the given frame cache for drawing, or canvas rotation if null.
+    public void setRotationCache(RotationCache rotations) {
+        this.rotations = rotations;
+    }
+
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    // Called by the game thread once its first frame is on screen.
+    void onFirstFramePresented() {
+        preloader.onFirstFrame();
+    }
+
+    // Called by the game thread right after every unlockCanvasAndPost().
+    void onFramePosted(long postedNanos) {
+        latency.onFramePosted(postedNanos);
+        int slot = postedCount % POSTED_FRAMES;
+        this.postedNanos[slot] = postedNanos;
+        postedViewTicks[slot] = renderedViewTicks;
+        postedCount++;
+    }
+
+    /**
+     * Called by the game thread after each later frame with the time since the previous
+     * one and the part of it the thread spent working rather than waiting for a buffer.
+     */
+    void onFramePresented(long intervalNanos, long workNanos) {
+        quality.onFrame(intervalNanos, workNanos, profiler.getTargetFrameNanos());
+    }
+
+    @Override
+    public void onQualityChanged(int oldLevel, int newLevel) {
+        // On the game thread from onFramePresented(), or on the UI thread when adaptive
+        // quality is turned off.
+        Log.i("GamePanel", "Quality " + QualityGovernor.levelName(oldLevel) + " -> "
+                + QualityGovernor.levelName(newLevel) + " (p99 frame "
+                + profiler.getFrameIntervals().getPercentile(99) / 1000 + " us)");
+        float scale = quality.getRenderScale();
+        if (scale != renderScale) {
+            // The surface can only be resized from the UI thread; surfaceChanged() follows.
+            post(() -> applyRenderScale(scale));
+        }
+    }
+
+    // Sizes the surface to scale times the view. UI thread only.
+    private void applyRenderScale(float scale) {
+        if (getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        if (scale >= 1f) {
+            holder.setSizeFromLayout();
+        } else {
+            holder.setFixedSize(Math.round(getWidth() * scale), Math.round(getHeight() * scale));
+        }
+    }
+
+    /**
+     * Turns adaptive quality on or off. Off renders at full quality no matter how many
+     * frames are missed.
+     */
+    public void setAdaptiveQualityEnabled(boolean enabled) {
+        quality.setEnabled(enabled);
+    }
+
+    // Quality levels and how much time was spent at each; see QualityGovernor.
+    public QualityGovernor getQualityGovernor() {
+        return quality;
+    }
+
+    // Number of entities currently in play, for frame statistics.
+    int getEntityCount() {
+        return simulation.getStore().count();
+    }
+
+    /**
+     * Writes the frame profile to a file on a background thread, so a dump never stalls
+     * the game loop or the UI. The touch latency percentiles go next to it, into
+     * touch_latency.txt.
+     */
+    public void dumpProfile(File file) {
+        File latencyFile = new File(file.getParentFile(), "touch_latency.txt");
+        new Thread(() -> {
+            try {
+                profiler.dump(file);
+                latency.dump(latencyFile);
+            } catch (IOException e) {
+                Log.e("GamePanel", "Could not write frame profile to " + file, e);
+            }
+        }, "ProfileDump").start();
+    }
+
+    /**
+     * Stops the game loop without ending the round, e.g. while the activity is in the
+     * background, and saves the round so it survives the process being killed. Game time
+     * only advances while the loop runs, so the round timer does not run down while
+     * paused. UI thread.
+     */
+    public void pause() {
+        paused = true;
+        if (gameThread != null) {
+            gameThread.shutdown();
+            gameThread = null;
+        }
+        telemetry.pause();
+        // With the loop stopped, the game thread no longer touches it.
+        latency.clearPending();
+        if (!simulation.isOver()) {
+            sounds.pauseBgm();
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * Continues a paused round. The loop restarts right away if the surface still exists,
+     * otherwise when it is recreated. UI thread.
+     */
+    public void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        if (surfaceReady && gameThread == null && !simulation.isOver()) {
+            sounds.startBgm();
+            startWaves();
         }
     }
 
-    private void updateSquares() {
-        Iterator<rndSqr> iterator = squares.iterator();
-        while (iterator.hasNext()) {
-            rndSqr square = iterator.next();
-            square.update(getWidth(), getHeight());
-            // If the square falls below the bottom of the screen...
-            if (square.pos.y > getHeight()) {
-                // ...and if it is a fruit/flower (non-penalty), subtract one life.
-                if (!square.isPenalty()) {
-                    lives--;
+    /**
+     * Encodes the round in memory (a few kilobytes, tens in storm mode) and writes it
+     * to the snapshot file in the background. The game loop must be stopped.
+     */
+    private void saveSnapshot() {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try {
+            simulation.writeSnapshot(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // Not possible with an in-memory stream.
+            throw new IllegalStateException(e);
+        }
+        byte[] snapshot = bytes.toByteArray();
+        long encoded = System.nanoTime() - start;
+        File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE);
+        snapshotIo.execute(() -> {
+            // Written next to the file and renamed over it, so a kill mid-write leaves the
+            // previous snapshot intact.
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(snapshot);
+            } catch (IOException e) {
+                Log.e("GamePanel", "Could not write round snapshot", e);
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                Log.e("GamePanel", "Could not replace round snapshot " + file);
+                return;
+            }
+            Log.d("GamePanel", "Saved round snapshot, " + snapshot.length + " bytes, encoded in "
+                    + encoded / 1000 + " us");
+        });
+    }
+
+    // Deletes the saved round, once it is over or the player left the game.
+    public void discardSnapshot() {
+        File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE);
+        snapshotIo.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                Log.w("GamePanel", "Could not delete round snapshot " + file);
+            }
+        });
+    }
+
+    /**
+     * Stops the panel's background threads once it is no longer used, after pause() and any
+     * discardSnapshot(); writes already submitted still finish. UI thread.
+     */
+    public void release() {
+        snapshotIo.shutdown();
+        telemetry.pause();
+        telemetry.shutdown();
+    }
+
+    /**
+     * Reads the round saved by a previous process, or returns null if there is none.
+     * Small enough to read on the UI thread.
+     */
+    public static byte[] loadSnapshot(Context context) {
+        File file = new File(context.getFilesDir(), SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] snapshot = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < snapshot.length) {
+                int n = in.read(snapshot, read, snapshot.length - read);
+                if (n < 0) {
+                    return null;
                 }
-                iterator.remove();
+                read += n;
             }
+            return snapshot;
+        } catch (IOException e) {
+            Log.e("GamePanel", "Could not read round snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Continues the round saved in snapshot instead of starting a new one. Call before the
+     * surface is created. Returns false, with a new round set up instead, if the snapshot
+     * cannot be used.
+     */
+    public boolean restore(byte[] snapshot) {
+        long start = System.nanoTime();
+        try {
+            simulation.readSnapshot(new DataInputStream(new ByteArrayInputStream(snapshot)));
+        } catch (IOException e) {
+            Log.w("GamePanel", "Discarding unusable round snapshot", e);
+            simulation.reset(new Random().nextLong());
+            discardSnapshot();
+            return false;
         }
-        // Call collision checking with both screen width and height.
-        Collisions.checkCollisions(squares, getWidth(), getHeight());
+        if (simulation.isOver()) {
+            simulation.reset(new Random().nextLong());
+            discardSnapshot();
+            return false;
+        }
+        Log.i("GamePanel", "Restored round " + simulation.getSeed() + " at "
+                + simulation.getElapsedMillis() + " ms, " + simulation.getStore().count()
+                + " objects, in " + (System.nanoTime() - start) / 1000 + " us");
+        return true;
     }
 
-    private void render() {
-        Canvas c = holder.lockCanvas();
-        if (c != null) {
-            c.drawBitmap(background, 0, 0, null);
-            for (rndSqr square : squares) {
-                square.draw(c);
+    /**
+     * Writes the round's recording to a file on a background thread. Only call on the
+     * game thread, after the recording was finished.
+     */
+    private void dumpSession(File file) {
+        byte[] recording = recorder.toByteArray();
+        new Thread(() -> {
+            try {
+                SessionRecorder.write(recording, file);
+            } catch (IOException e) {
+                Log.e("GamePanel", "Could not write session recording to " + file, e);
             }
+        }, "SessionDump").start();
+    }
 
-            Paint paint = new Paint();
-            paint.setColor(Color.WHITE);
-            paint.setTextSize(50);
-            c.drawText("Score: " + score, 20, 60, paint);
-            c.drawText("Lives: " + lives, 20, 120, paint);
+    @Override
+    public void onEntityTapped(int type, int points, long eventNanos) {
+        // Only queued here; update() flushes once per frame, so a swipe that clears several
+        // objects costs the game thread a few counter increments.
+        if (type == EntityStore.TYPE_PEST) {
+            sounds.queueSfx(SfxDispatcher.SFX_PEST);
+        } else if (type == EntityStore.TYPE_FLOWER) {
+            sounds.queueSfx(SfxDispatcher.SFX_FLOWER);
+        } else {
+            sounds.queueSfx(SfxDispatcher.SFX_FRUIT);
+        }
+        latency.onHit(eventNanos, System.nanoTime());
+        long now = simulation.getElapsedMillis();
+        telemetry.record(Telemetry.EVENT_TAP, now, type, points);
+        if (type == EntityStore.TYPE_PEST) {
+            telemetry.record(Telemetry.EVENT_LIFE_LOST, now, Telemetry.LIFE_LOST_PEST,
+                    simulation.getLives());
+        }
+    }
 
-            long elapsedTime = System.currentTimeMillis() - gameStartTime;
-            long timeRemaining = Math.max(0, gameDuration - elapsedTime);
-            String timeText = String.format("%02d:%02d", (timeRemaining / 60000) % 60, (timeRemaining / 1000) % 60);
+    @Override
+    public void onEntityMissed(int type) {
+        long now = simulation.getElapsedMillis();
+        telemetry.record(Telemetry.EVENT_MISS, now, type, 0);
+        telemetry.record(Telemetry.EVENT_LIFE_LOST, now, Telemetry.LIFE_LOST_MISSED,
+                simulation.getLives());
+    }
+
+    @Override
+    public void onWaveSpawned(int waveCount, int objects) {
+        telemetry.record(Telemetry.EVENT_WAVE, simulation.getElapsedMillis(), waveCount, objects);
+    }
 
-            Paint timerPaint = new Paint();
-            timerPaint.setColor(Color.YELLOW);
-            timerPaint.setTextSize(70);
-            timerPaint.setTextAlign(Paint.Align.CENTER);
-            c.drawText(timeText, getWidth() / 2, 60, timerPaint);
+    @Override
+    public void onCollisions(int pairs) {
+        telemetry.record(Telemetry.EVENT_COLLISIONS, simulation.getElapsedMillis(), pairs,
+                simulation.getStore().count());
+    }
 
-            holder.unlockCanvasAndPost(c);
+    @Override
+    public void onGameOver(int finalScore) {
+        // Called from inside step() on the game thread; the loop exits after this frame.
+        gameThread.setRunning(false);
+        Log.d("GamePanel", "Round over, " + sprites);
+        RotationCache frames = rotations;
+        if (frames != null) {
+            Log.d("GamePanel", "Rotation frames: " + frames.getFrameCount() + " frames, "
+                    + frames.getUsedBytes() / 1024 + " KB of " + frames.getBudgetBytes() / 1024
+                    + " KB, " + frames.getBudgetMisses() + " over budget");
         }
+        Log.i("GamePanel", "Quality on " + Build.MODEL + ": " + quality);
+        Log.i("GamePanel", "Latency on " + Build.MODEL + ": " + latency.summary());
+        dumpProfile(new File(getContext().getFilesDir(), "frame_profile.txt"));
+        if (recorder.finish(simulation)) {
+            dumpSession(new File(getContext().getFilesDir(), "last_session.bin"));
+        }
+        discardSnapshot();
+        telemetry.record(Telemetry.EVENT_ROUND_END, simulation.getElapsedMillis(), finalScore,
+                simulation.getWaveCount());
+        telemetry.pause();
+        Log.d("GamePanel", telemetry.toString());
+        // In memory only; the store writes it to its file later, on its own thread.
+        ScoreStore.Round round = ScoreStore.Round.of(simulation, System.currentTimeMillis());
+        scores.add(round);
+        Log.d("GamePanel", scores.toString());
+        showGameOverScreen(round); // Call game over screen
     }
 
+    /**
+     * Queues the touch for the game thread instead of hit-testing here, so the UI thread
+     * never waits on the game loop.
+     */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (event.getAction() == MotionEvent.ACTION_DOWN ||
-                event.getAction() == MotionEvent.ACTION_MOVE) {
-            PointF touchPos = new PointF(event.getX(), event.getY());
-            Iterator<rndSqr> iterator = squares.iterator();
-            while (iterator.hasNext()) {
-                rndSqr square = iterator.next();
-                if (square.contains(touchPos)) {
-                    if (square.isPenalty()) {
-                        lives--;
-                        // Call pest sound effect (make sure SoundManager has playPestTap())
-                        SoundManager.getInstance(getContext()).playPestTap();
-                    } else {
-                        score += square.getPoints();
-                        if (square.getPoints() == 5) {
-                            SoundManager.getInstance(getContext()).playFlowerTap();
-                        } else {
-                            SoundManager.getInstance(getContext()).playFruitTap();
-                        }
-                    }
-                    iterator.remove();
-                }
+        // If the game thread falls behind and the queue fills up, extra touches are dropped.
+        // Event times are uptimeMillis(), which runs on the same monotonic clock as
+        // System.nanoTime(), so they carry over for the latency measurement.
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            lastTouchX = event.getX();
+            lastTouchY = event.getY();
+            touchQueue.offer(lastTouchX, lastTouchY, lastTouchX, lastTouchY,
+                    event.getEventTime() * 1_000_000L);
+        } else if (event.getAction() == MotionEvent.ACTION_MOVE) {
+            // A MOVE event batches every sample since the previous one; queue the whole
+            // path so fast swipes cannot skip over objects between samples.
+            for (int h = 0, n = event.getHistorySize(); h < n; h++) {
+                queueSegmentTo(event.getHistoricalX(h), event.getHistoricalY(h),
+                        event.getHistoricalEventTime(h) * 1_000_000L);
             }
+            queueSegmentTo(event.getX(), event.getY(), event.getEventTime() * 1_000_000L);
         }
         return true;
     }
 
+    private void queueSegmentTo(float x, float y, long eventNanos) {
+        touchQueue.offer(lastTouchX, lastTouchY, x, y, eventNanos);
+        lastTouchX = x;
+        lastTouchY = y;
+    }
+
     @Override
     public void surfaceCreated(@NonNull SurfaceHolder holder) {
-        running = true;
-        gameStartTime = System.currentTimeMillis();
-
-        // Scale and crop background to fill the screen without black borders.
-        Bitmap originalBackground = BitmapFactory.decodeResource(getResources(), R.drawable.background);
         int screenWidth = getWidth();
         int screenHeight = getHeight();
-        float scaleX = (float) screenWidth / originalBackground.getWidth();
-        float scaleY = (float) screenHeight / originalBackground.getHeight();
-        float scale = Math.max(scaleX, scaleY);
-        int newWidth = Math.round(originalBackground.getWidth() * scale);
-        int newHeight = Math.round(originalBackground.getHeight() * scale);
-        Bitmap scaledBackground = Bitmap.createScaledBitmap(originalBackground, newWidth, newHeight, true);
-        int xOffset = (newWidth - screenWidth) / 2;
-        int yOffset = (newHeight - screenHeight) / 2;
-        background = Bitmap.createBitmap(scaledBackground, xOffset, yOffset, screenWidth, screenHeight);
-
+        // Scaled and cropped to fill the screen without black borders. Decoded during the
+        // countdown and kept across restarts by the AssetPreloader.
+        background = preloader.getScreenBackground(screenWidth, screenHeight);
+        simulation.setScreenSize(screenWidth, screenHeight);
+        dirtyRegion.setScreenSize(screenWidth, screenHeight);
+        updateFrameTarget();
+        hud.invalidate();
+
+        surfaceReady = true;
+        // After a finished round the panel waits for restart() instead, and while paused
+        // for resume(), which starts the music and the loop itself.
+        if (paused) {
+            return;
+        }
         // Start background music.
         SoundManager.getInstance(getContext()).startBgm();
-
-        startWaves();
-        render();
+        if (!simulation.isOver()) {
+            startWaves();
+        }
     }
 
     @Override
     public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
-        // No additional handling required.
+        // With adaptive quality the surface may be smaller than the view; the game keeps
+        // playing in view pixels and only the drawing is scaled.
+        int viewWidth = getWidth() > 0 ? getWidth() : width;
+        int viewHeight = getHeight() > 0 ? getHeight() : height;
+        renderScale = width / (float) viewWidth;
+        simulation.setScreenSize(viewWidth, viewHeight);
+        dirtyRegion.setScreenSize(viewWidth, viewHeight);
+        updateFrameTarget();
+    }
+
+    // Sets the frame budget from the display's refresh rate, which on 90/120 Hz panels may
+    // change with the surface; jank counts, quality and lag compensation all depend on it.
+    private void updateFrameTarget() {
+        Display display = getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 0f;
+        if (refreshRate >= 1f) {
+            profiler.setTargetFrameNanos((long) (1_000_000_000L / refreshRate));
+        }
     }
 
     @Override
     public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
-        running = false;
-        handler.removeCallbacksAndMessages(null);
+        surfaceReady = false;
+        if (gameThread != null) {
+            // Wait for the loop to let go of the surface before it is destroyed.
+            gameThread.shutdown();
+            gameThread = null;
+        }
+        telemetry.pause();
+        latency.clearPending();
     }
 
     /**
-     * Displays a game-over overlay by inflating the game_over.xml layout. This overlay
-     * shows the centered final score and two buttons: "Play Again" and "Main Menu".
+     * Shows the game-over overlay with the final score. The overlay is inflated once by
+     * MainActivity and only made visible here; the panel and its surface stay underneath
+     * for a warm restart.
      */
-    private void showGameOverScreen() {
+    private void showGameOverScreen(ScoreStore.Round round) {
         post(new Runnable() {
             @Override
             public void run() {
-                SoundManager.getInstance(getContext()).pauseBgm();
-                SoundManager.getInstance(getContext()).playGameOverSfx();
+                sounds.pauseBgm();
+                sounds.playGameOverSfx();
 
                 if (getContext() instanceof MainActivity) {
-                    MainActivity activity = (MainActivity) getContext();
-                    FrameLayout gameContainer = activity.findViewById(R.id.gameContainer);
-                    gameContainer.removeAllViews();
-
-                    LayoutInflater inflater = LayoutInflater.from(getContext());
-                    View gameOverView = inflater.inflate(R.layout.game_over, null);
-
-                    TextView scoreText = gameOverView.findViewById(R.id.finalScoreTextView);
-                    scoreText.setText("Final Score: " + score);
-
-                    ImageButton playAgainButton = gameOverView.findViewById(R.id.playAgainButton);
-                    playAgainButton.setOnClickListener(v -> activity.startGame());
-
-                    ImageButton mainMenuButton = gameOverView.findViewById(R.id.mainMenuButton);
-                    //mainMenuButton.setOnClickListener(v -> activity.openMainMenu());
-
-                    gameContainer.addView(gameOverView);
+                    ((MainActivity) getContext()).showGameOver(round);
                 }
             }
         });
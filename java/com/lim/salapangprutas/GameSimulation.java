@@ -0,0 +1,526 @@
+package com.lim.salapangprutas;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Platform-independent game rules: wave spawning, movement, collisions, life accounting,
+ * scoring and the round timer. It has no Android dependencies and no hidden time source;
+ * it advances only through step(), and all randomness comes from streams seeded from a
+ * single session seed. The same seed, screen size and sequence of step() calls therefore
+ * always produce the same game, on a device or on a plain JVM.
+ */
+public class GameSimulation {
+
+    // Length of one simulation tick. Speeds in the game are tuned in pixels per tick.
+    public static final long TICK_MILLIS = 50;
+    public static final long TICK_NANOS = TICK_MILLIS * 1_000_000L;
+
+    public static final int OBJECT_SIZE = 150;  // Diameter of every object, in pixels.
+    public static final long DEFAULT_DURATION_MILLIS = 2 * 60 * 1000; // 2 minutes
+
+    // Harvest storm: an endless stream of smaller objects instead of waves; see
+    // setStormObjects(). New objects per tick are limited so they do not all start in a
+    // single row.
+    public static final int STORM_OBJECT_SIZE = 60;
+    private static final int STORM_SPAWN_PER_TICK = 16;
+    private static final int STORM_SPEED = 20;
+
+    // Identifies writeSnapshot() data ("SALG").
+    private static final int SNAPSHOT_MAGIC = 0x53414C47;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    // Mixed into the session seed so each random stream gets its own sequence.
+    private static final long SPAWN_STREAM = 0x9E3779B97F4A7C15L;
+    private static final long MOTION_STREAM = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Receives game events as they happen inside step(). Called on the stepping thread.
+     */
+    public interface Listener {
+        // A fruit, flower or pest was tapped. Points are 0 for pests. eventNanos is when
+        // the touch happened (System.nanoTime() time base), or 0 if unknown.
+        default void onEntityTapped(int type, int points, long eventNanos) {}
+
+        // A fruit or flower fell off the bottom of the screen.
+        default void onEntityMissed(int type) {}
+
+        default void onWaveSpawned(int waveCount, int objects) {}
+
+        // Objects bumped into each other during a tick; called only for ticks with contacts.
+        default void onCollisions(int pairs) {}
+
+        default void onGameOver(int finalScore) {}
+    }
+
+    private long seed;
+    private final SnapshotRandom spawnRandom;
+    private final SnapshotRandom motionRandom;
+    private final EntityStore store;
+    private final int fruitVariants;
+    private final int flowerVariants;
+    private final int pestVariants;
+    private Listener listener = new Listener() {};
+    private final SweptHitTest hitTest = new SweptHitTest();
+    private FrameProfiler profiler;  // Optional; timings are observed, never fed back.
+    private int stormObjects = 0;     // Objects kept in play in storm mode; 0 for normal rounds.
+    private ParallelPhysics physics;  // Multi-core movement and collisions, or null.
+
+    private int screenWidth;
+    private int screenHeight;
+
+    // Round state; initial values are set in reset().
+    private int score;
+    private int lives;
+    // Wave parameters
+    private int squaresPerWave;
+    private int waveSpeed;
+    private int waveCount;
+    private double pestProbability;
+
+    private long durationMillis = DEFAULT_DURATION_MILLIS;
+    private long simulatedNanos;   // Game time covered by completed ticks.
+    private long accumulatorNanos; // Stepped time not yet consumed by a tick.
+    private boolean over;
+
+    /**
+     * @param seed           Session seed; every random decision is derived from it.
+     * @param fruitVariants  Number of fruit images to choose from.
+     * @param flowerVariants Number of flower images to choose from.
+     * @param pestVariants   Number of pest images to choose from.
+     */
+    public GameSimulation(long seed, int fruitVariants, int flowerVariants, int pestVariants) {
+        this.spawnRandom = new SnapshotRandom();
+        this.motionRandom = new SnapshotRandom();
+        this.store = new EntityStore(16, motionRandom);
+        this.fruitVariants = fruitVariants;
+        this.flowerVariants = flowerVariants;
+        this.pestVariants = pestVariants;
+        reset(seed);
+    }
+
+    /**
+     * Starts a new round from the given seed. Screen size, duration, listener and profiler
+     * are kept, and so is every allocated array, so a restart allocates nothing. The round
+     * plays exactly as it would in a new GameSimulation with the same seed.
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        spawnRandom.setSeed(seed ^ SPAWN_STREAM);
+        motionRandom.setSeed(seed ^ MOTION_STREAM);
+        store.clear();
+
+        score = 0;
+        lives = 3;
+        squaresPerWave = 3;
+        waveSpeed = 20;  // Constant fast speed throughout the game.
+        waveCount = 0;
+        // Initial pest probability: 15%
+        pestProbability = 0.15;
+
+        simulatedNanos = 0;
+        accumulatorNanos = 0;
+        over = false;
+    }
+
+    /**
+     * Writes the complete round state: random streams, rules, timers and every entity.
+     * readSnapshot() continues the round exactly where it was, down to the next random
+     * number. Listener, profiler and thread count are not part of it.
+     */
+    public void writeSnapshot(DataOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeByte(SNAPSHOT_VERSION);
+        out.writeLong(seed);
+        out.writeLong(spawnRandom.getState());
+        out.writeLong(motionRandom.getState());
+        out.writeByte(fruitVariants);
+        out.writeByte(flowerVariants);
+        out.writeByte(pestVariants);
+        out.writeInt(screenWidth);
+        out.writeInt(screenHeight);
+        out.writeLong(durationMillis);
+        out.writeInt(stormObjects);
+        out.writeBoolean(physics != null);
+
+        out.writeInt(score);
+        out.writeInt(lives);
+        out.writeInt(squaresPerWave);
+        out.writeInt(waveSpeed);
+        out.writeInt(waveCount);
+        out.writeDouble(pestProbability);
+        out.writeLong(simulatedNanos);
+        out.writeLong(accumulatorNanos);
+        out.writeBoolean(over);
+        store.writeTo(out);
+    }
+
+    /**
+     * Replaces the round with one written by writeSnapshot(). A snapshot that used
+     * ParallelPhysics switches it on with one thread per core, and vice versa, so the
+     * round goes on the same way. Throws IOException if the data is not a snapshot or was
+     * written for other sprite variant counts; the round is then left unchanged, unless
+     * the data is cut off in the middle of the entities.
+     */
+    public void readSnapshot(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        int version = in.readByte();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported game snapshot version " + version);
+        }
+        long snapshotSeed = in.readLong();
+        long spawnState = in.readLong();
+        long motionState = in.readLong();
+        if (in.readByte() != fruitVariants || in.readByte() != flowerVariants
+                || in.readByte() != pestVariants) {
+            throw new IOException("Game snapshot has different sprite variants");
+        }
+        int width = in.readInt();
+        int height = in.readInt();
+        long duration = in.readLong();
+        int storm = in.readInt();
+        boolean parallel = in.readBoolean();
+
+        int snapshotScore = in.readInt();
+        int snapshotLives = in.readInt();
+        int snapshotSquaresPerWave = in.readInt();
+        int snapshotWaveSpeed = in.readInt();
+        int snapshotWaveCount = in.readInt();
+        double snapshotPestProbability = in.readDouble();
+        long snapshotSimulatedNanos = in.readLong();
+        long snapshotAccumulatorNanos = in.readLong();
+        boolean snapshotOver = in.readBoolean();
+        store.readFrom(in, new int[]{fruitVariants, flowerVariants, pestVariants});
+
+        seed = snapshotSeed;
+        spawnRandom.setState(spawnState);
+        motionRandom.setState(motionState);
+        screenWidth = width;
+        screenHeight = height;
+        durationMillis = duration;
+        stormObjects = storm;
+        if (parallel != (physics != null)) {
+            setParallelism(parallel ? Runtime.getRuntime().availableProcessors() : 0);
+        }
+        score = snapshotScore;
+        lives = snapshotLives;
+        squaresPerWave = snapshotSquaresPerWave;
+        waveSpeed = snapshotWaveSpeed;
+        waveCount = snapshotWaveCount;
+        pestProbability = snapshotPestProbability;
+        simulatedNanos = snapshotSimulatedNanos;
+        accumulatorNanos = snapshotAccumulatorNanos;
+        over = snapshotOver;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : new Listener() {};
+    }
+
+    // Records input, update and collision timings into the profiler (null to disable).
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public void setScreenSize(int width, int height) {
+        this.screenWidth = width;
+        this.screenHeight = height;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Switches to the endless harvest storm: instead of waves, small objects keep falling
+     * until about this many are in play. There is no timer and missed objects cost
+     * nothing; the round only ends when the last life is lost to a pest. 0 goes back to
+     * normal rounds. Set before the round starts.
+     */
+    public void setStormObjects(int stormObjects) {
+        this.stormObjects = Math.max(0, stormObjects);
+    }
+
+    public int getStormObjects() {
+        return stormObjects;
+    }
+
+    public boolean isStorm() {
+        return stormObjects > 0;
+    }
+
+    /**
+     * Moves objects and resolves collisions on this many threads with ParallelPhysics, or
+     * with the sequential Collisions path for 0. Any thread count from 1 up plays the
+     * same game, but a different one from 0, so set it before the round starts.
+     */
+    public void setParallelism(int threads) {
+        if (physics != null) {
+            if (physics.getParallelism() == threads) {
+                return;
+            }
+            physics.shutdown();
+        }
+        physics = threads > 0 ? new ParallelPhysics(threads) : null;
+    }
+
+    public int getParallelism() {
+        return physics != null ? physics.getParallelism() : 0;
+    }
+
+    /**
+     * Advances the game by dtNanos of game time. The touches are applied first, then as many
+     * fixed ticks of TICK_NANOS run as the accumulated time allows; the remainder carries
+     * over to the next call.
+     *
+     * @param touches Touch segments since the last step, or null for none.
+     * @return Number of ticks that ran.
+     */
+    public int step(long dtNanos, TouchBuffer touches) {
+        if (over) {
+            return 0;
+        }
+        if (touches != null) {
+            long start = profiler != null ? System.nanoTime() : 0;
+            applyTouches(touches);
+            if (profiler != null) {
+                profiler.record(FrameProfiler.PHASE_INPUT, System.nanoTime() - start);
+            }
+        }
+
+        accumulatorNanos += dtNanos;
+        int ticks = 0;
+        while (accumulatorNanos >= TICK_NANOS && !over) {
+            tick();
+            accumulatorNanos -= TICK_NANOS;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Runs one fixed tick.
+     * Spawns waves of objects: when there are no non-penalty (point-giving) objects
+     * on screen, a new wave is spawned.
+     */
+    public void tick() {
+        if (over) return; // Exit if game is over
+
+        if ((stormObjects == 0 && simulatedNanos / 1_000_000L >= durationMillis) || lives <= 0) {
+            over = true;
+            listener.onGameOver(score);
+            return;
+        }
+
+        if (stormObjects > 0) {
+            spawnObjects(Math.min(STORM_SPAWN_PER_TICK, stormObjects - store.count()),
+                    STORM_SPEED, STORM_OBJECT_SIZE);
+        } else if (!store.hasPointEntities()) {
+            // No point-giving (non-penalty) objects are present: spawn a new wave.
+            int spawned = squaresPerWave;
+            spawnWave(spawned, waveSpeed);
+            // Increase base speed by 2.5 every wave.
+            waveSpeed += 2.5;
+            waveCount++;
+
+            // Every 3 waves, increase the number of objects per wave by 2 (capped at 8).
+            if (waveCount % 3 == 0) {
+                squaresPerWave = Math.min(squaresPerWave + 2, 8);
+            }
+
+            // Every wave, increase pest spawn probability by 0.2% (0.002), capped at 50%.
+            pestProbability = Math.min(pestProbability + 0.002, 0.5);
+            // The count just spawned, not the next wave's, which may have grown above.
+            listener.onWaveSpawned(waveCount, spawned);
+        }
+
+        updateSquares();
+        simulatedNanos += TICK_NANOS;
+        store.recordHistory(getTickCount());
+    }
+
+    /**
+     * Spawns a wave of objects.
+     * For each of the numSquares:
+     * - With probability based on pestProbability, a penalty (pest) is spawned.
+     * - Otherwise, a non-penalty is spawned:
+     *    • 10% chance for a flower (worth +5)
+     *    • Otherwise a fruit (worth +1)
+     * Package-private so the benchmarks can spawn waves directly.
+     */
+    void spawnWave(int numSquares, int speed) {
+        spawnObjects(numSquares, speed, OBJECT_SIZE);
+    }
+
+    private void spawnObjects(int numSquares, int speed, int size) {
+        for (int i = 0; i < numSquares; i++) {
+            int x = spawnRandom.nextInt(Math.max(screenWidth - 100, 1));
+            x = Math.max(x, 0);
+            // Use pestProbability for penalty decision.
+            boolean isPenalty = (spawnRandom.nextDouble() < pestProbability);
+            if (isPenalty) {
+                int pestIndex = spawnRandom.nextInt(pestVariants);
+                // Make pests fall 1.5 times faster than the base speed.
+                store.add(EntityStore.TYPE_PEST, pestIndex, x, 0, size, 0, (int)(speed * 1.5), -5);
+            } else {
+                // For non-penalty objects, choose between fruit and flower.
+                if (spawnRandom.nextDouble() < 0.1) { // 10% chance for a flower
+                    int flowerIndex = spawnRandom.nextInt(flowerVariants);
+                    // Flower awards +5 points.
+                    store.addWithSpeed(EntityStore.TYPE_FLOWER, flowerIndex, x, 0, size, speed, 5);
+                } else { // Otherwise, spawn a fruit.
+                    int fruitIndex = spawnRandom.nextInt(fruitVariants);
+                    // Fruit awards +1 point.
+                    store.addWithSpeed(EntityStore.TYPE_FRUIT, fruitIndex, x, 0, size, speed, 1);
+                }
+            }
+        }
+    }
+
+    private void updateSquares() {
+        long start = profiler != null ? System.nanoTime() : 0;
+        if (physics != null) {
+            physics.integrate(store);
+        } else {
+            store.updateAll();
+        }
+        int i = 0;
+        while (i < store.count()) {
+            // If the square falls below the bottom of the screen...
+            if (store.y[i] > screenHeight) {
+                // ...and if it is a fruit/flower (non-penalty), subtract one life. The
+                // storm has too many objects for every miss to count.
+                if (!store.isPenalty(i) && stormObjects == 0) {
+                    lives--;
+                    listener.onEntityMissed(store.type[i]);
+                }
+                // Swap-remove moves the last entity into slot i, so i is checked again.
+                store.remove(i);
+            } else {
+                i++;
+            }
+        }
+        long updated = profiler != null ? System.nanoTime() : 0;
+
+        // Call collision checking with both screen width and height.
+        int contacts;
+        if (physics != null) {
+            contacts = physics.checkCollisions(store, screenWidth, screenHeight);
+        } else {
+            contacts = Collisions.checkCollisions(store, screenWidth, screenHeight);
+        }
+        if (profiler != null) {
+            profiler.record(FrameProfiler.PHASE_UPDATE, updated - start);
+            profiler.record(FrameProfiler.PHASE_COLLISIONS, System.nanoTime() - updated);
+        }
+        if (contacts > 0) {
+            listener.onCollisions(contacts);
+        }
+    }
+
+    /**
+     * Hit-tests every touch segment against the objects on screen. Tapping a pest costs a
+     * life, tapping a fruit or flower scores its points; either way the object is removed.
+     */
+    private void applyTouches(TouchBuffer touches) {
+        int hits = hitTest.test(store, touches, screenWidth, screenHeight, getTickCount());
+        if (hits == 0) {
+            return;
+        }
+        for (int k = 0; k < hits; k++) {
+            int i = hitTest.hitAt(k);
+            long eventNanos = touches.eventNanos(hitTest.touchAt(k));
+            if (store.isPenalty(i)) {
+                lives--;
+                listener.onEntityTapped(EntityStore.TYPE_PEST, 0, eventNanos);
+            } else {
+                score += store.points[i];
+                listener.onEntityTapped(store.type[i], store.points[i], eventNanos);
+            }
+        }
+        // Remove from the back, so swap-removal never moves an entity that is still to go.
+        for (int i = store.count() - 1; i >= 0; i--) {
+            if (hitTest.isHit(i)) {
+                store.remove(i);
+            }
+        }
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getFruitVariants() {
+        return fruitVariants;
+    }
+
+    public int getFlowerVariants() {
+        return flowerVariants;
+    }
+
+    public int getPestVariants() {
+        return pestVariants;
+    }
+
+    public EntityStore getStore() {
+        return store;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getWaveCount() {
+        return waveCount;
+    }
+
+    public int getWaveSpeed() {
+        return waveSpeed;
+    }
+
+    public double getPestProbability() {
+        return pestProbability;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    // Ticks run so far this round; the current positions are from the last of them.
+    public long getTickCount() {
+        return simulatedNanos / TICK_NANOS;
+    }
+
+    // Game time elapsed, including the part of a tick not yet simulated.
+    public long getElapsedMillis() {
+        return (simulatedNanos + accumulatorNanos) / 1_000_000L;
+    }
+
+    public long getRemainingMillis() {
+        return Math.max(0, durationMillis - getElapsedMillis());
+    }
+
+    // How far (0..1) the present lies between the previous tick and the current one.
+    public float getInterpolationAlpha() {
+        return (float) accumulatorNanos / TICK_NANOS;
+    }
+}
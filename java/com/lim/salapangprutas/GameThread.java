@@ -0,0 +1,125 @@
+package com.lim.salapangprutas;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+/**
+ * Dedicated game-loop thread that owns the SurfaceHolder while the surface exists.
+ * Each frame it measures the elapsed time on its GameClock and steps the panel's
+ * GameSimulation, which advances in fixed ticks so gameplay speed does not depend on the
+ * display; the frame is then rendered with positions interpolated between the last two
+ * ticks, so 60/90/120 Hz panels get smooth motion.
+ */
+public class GameThread extends Thread {
+
+    // Never simulate more than this much time in one frame (e.g. after a long stall),
+    // otherwise the loop could spend all its time catching up.
+    private static final long MAX_FRAME_NANOS = 5 * GameSimulation.TICK_NANOS;
+
+    private final SurfaceHolder holder;
+    private final GamePanel panel;
+    private final GameClock clock;
+    private final FrameProfiler profiler;
+    private volatile boolean running = false;
+    private final Rect dirty = new Rect();
+
+    public GameThread(SurfaceHolder holder, GamePanel panel, GameClock clock, FrameProfiler profiler) {
+        super("GameThread");
+        this.holder = holder;
+        this.panel = panel;
+        this.clock = clock;
+        this.profiler = profiler;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the loop and waits for the thread to finish, so the surface is no longer
+     * touched once this returns. Must not be called from the game thread itself.
+     */
+    public void shutdown() {
+        running = false;
+        interrupt();
+        boolean retry = true;
+        while (retry) {
+            try {
+                join();
+                retry = false;
+            } catch (InterruptedException e) {
+                // Keep waiting; the surface must not be used after surfaceDestroyed returns.
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = clock.nanoTime();
+
+        boolean firstFrame = true;
+
+        while (running) {
+            long now = clock.nanoTime();
+            long frameInterval = now - previous;
+            long frameTime = Math.min(frameInterval, MAX_FRAME_NANOS);
+            previous = now;
+
+            // Touches are applied every frame rather than every tick, so hits feel immediate;
+            // the simulation then runs as many fixed ticks as the elapsed time calls for.
+            panel.update(frameTime);
+            if (!running) {
+                break;
+            }
+
+            // Only the changed part of the screen is locked and redrawn, unless too much
+            // of it changed. lockCanvas may grow the rectangle; render() covers whatever
+            // it ends up as.
+            Rect region = panel.prepareFrame(dirty);
+
+            // lockCanvas blocks until a buffer is free, which paces the loop to the display.
+            long lockStart = clock.nanoTime();
+            Canvas c = region != null ? holder.lockCanvas(region) : holder.lockCanvas();
+            long renderStart = clock.nanoTime();
+            if (c == null) {
+                // Nothing was presented, so the screen no longer matches the tracked region.
+                panel.invalidateFrame();
+                // The surface is unavailable; lockCanvas returns at once, so wait about a
+                // frame before trying again rather than spinning.
+                long waitNanos = profiler.getTargetFrameNanos();
+                try {
+                    Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+                } catch (InterruptedException e) {
+                    // shutdown() interrupts; the loop condition decides whether to go on.
+                }
+            } else {
+                long postStart;
+                try {
+                    panel.render(c, region);
+                } finally {
+                    postStart = clock.nanoTime();
+                    holder.unlockCanvasAndPost(c);
+                }
+                profiler.record(FrameProfiler.PHASE_LOCK_CANVAS, renderStart - lockStart);
+                profiler.record(FrameProfiler.PHASE_RENDER, postStart - renderStart);
+                long end = clock.nanoTime();
+                profiler.record(FrameProfiler.PHASE_POST, end - postStart);
+                panel.onFramePosted(end);
+                // The first interval only measures thread start-up.
+                if (!firstFrame) {
+                    profiler.recordFrame(frameInterval, panel.getEntityCount());
+                    // Everything but the wait for a buffer, which only paces the loop.
+                    panel.onFramePresented(frameInterval, (lockStart - now) + (end - renderStart));
+                } else {
+                    panel.onFirstFramePresented();
+                }
+                firstFrame = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.lim.salapangprutas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of non-negative long values (typically nanoseconds).
+ * Buckets are log-linear: every power of two is split into four buckets, so any value is
+ * reported within 25% of its true size while the whole range of a long fits in 256 slots.
+ * Recording is a couple of atomic increments and never allocates, so it can stay enabled
+ * in production; readers may take percentiles concurrently.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketFor(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value that falls into the given bucket.
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Returns an upper estimate of the given percentile (0..100), or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // Report the top of the bucket, but never more than the largest value seen.
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Clears all counts. Values recorded concurrently with a reset may be partly lost.
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
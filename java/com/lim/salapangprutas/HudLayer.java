@@ -0,0 +1,195 @@
+package com.lim.salapangprutas;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Score, lives and timer display. Each item is rasterized once into its own bitmap and
+ * only re-rendered when its value changes (the timer once per displayed second), so the
+ * per-frame HUD cost is three bitmap blits instead of three rounds of glyph layout.
+ * Text is assembled in reused char buffers, so updates do not allocate either.
+ */
+public class HudLayer {
+
+    private final TextSprite scoreSprite;
+    private final TextSprite livesSprite;
+    private final TextSprite timerSprite;
+
+    private int shownScore = Integer.MIN_VALUE;
+    private int shownLives = Integer.MIN_VALUE;
+    private long shownSecond = Long.MIN_VALUE;
+
+    private int rasterCount = 0;  // How many times any item was re-rendered.
+
+    public HudLayer() {
+        Paint hudPaint = new Paint();
+        hudPaint.setColor(Color.WHITE);
+        hudPaint.setTextSize(50);
+        scoreSprite = new TextSprite(hudPaint, "Score: ");
+        livesSprite = new TextSprite(hudPaint, "Lives: ");
+
+        Paint timerPaint = new Paint();
+        timerPaint.setColor(Color.YELLOW);
+        timerPaint.setTextSize(70);
+        timerSprite = new TextSprite(timerPaint, "");
+    }
+
+    /**
+     * Draws the HUD, re-rendering only the items whose displayed value changed.
+     */
+    public void draw(Canvas c, int score, int lives, long remainingMillis, int screenWidth) {
+        update(score, lives, remainingMillis, screenWidth, null);
+        draw(c, screenWidth);
+    }
+
+    /**
+     * Re-renders the items whose displayed value changed and adds their screen area, before
+     * and after the change, to dirty (which may be null).
+     */
+    public void update(int score, int lives, long remainingMillis, int screenWidth,
+                       DirtyRegion dirty) {
+        if (score != shownScore) {
+            shownScore = score;
+            scoreSprite.addBounds(dirty, 20, 60);
+            scoreSprite.setNumber(score);
+            scoreSprite.addBounds(dirty, 20, 60);
+            rasterCount++;
+        }
+        if (lives != shownLives) {
+            shownLives = lives;
+            livesSprite.addBounds(dirty, 20, 120);
+            livesSprite.setNumber(lives);
+            livesSprite.addBounds(dirty, 20, 120);
+            rasterCount++;
+        }
+        long second = remainingMillis / 1000;
+        if (second != shownSecond) {
+            shownSecond = second;
+            timerSprite.addBounds(dirty, timerX(screenWidth), 60);
+            timerSprite.setTime(remainingMillis);
+            timerSprite.addBounds(dirty, timerX(screenWidth), 60);
+            rasterCount++;
+        }
+    }
+
+    // Draws the items as last rendered by update().
+    public void draw(Canvas c, int screenWidth) {
+        scoreSprite.draw(c, 20, 60);
+        livesSprite.draw(c, 20, 120);
+        timerSprite.draw(c, timerX(screenWidth), 60);
+    }
+
+    // The timer is centered horizontally.
+    private float timerX(int screenWidth) {
+        return screenWidth / 2f - timerSprite.getTextWidth() / 2f;
+    }
+
+    // Forces every item to be re-rendered on the next draw.
+    public void invalidate() {
+        shownScore = Integer.MIN_VALUE;
+        shownLives = Integer.MIN_VALUE;
+        shownSecond = Long.MIN_VALUE;
+    }
+
+    public int getRasterCount() {
+        return rasterCount;
+    }
+
+    /**
+     * One line of text cached in a bitmap. The bitmap is only reallocated when the text
+     * outgrows it.
+     */
+    private static class TextSprite {
+        private final Paint paint;
+        private final char[] text = new char[32];
+        private final int prefixLength;
+        private int length;
+        private float textWidth;
+        private Bitmap bitmap;
+        private Canvas bitmapCanvas;
+
+        TextSprite(Paint paint, String prefix) {
+            this.paint = paint;
+            prefix.getChars(0, prefix.length(), text, 0);
+            this.prefixLength = prefix.length();
+        }
+
+        // Shows the prefix followed by the number.
+        void setNumber(int value) {
+            length = appendInt(text, prefixLength, value);
+            rasterize();
+        }
+
+        // Shows the time as mm:ss, like String.format("%02d:%02d", ...).
+        void setTime(long millis) {
+            int minutes = (int) ((millis / 60000) % 60);
+            int seconds = (int) ((millis / 1000) % 60);
+            text[0] = (char) ('0' + minutes / 10);
+            text[1] = (char) ('0' + minutes % 10);
+            text[2] = ':';
+            text[3] = (char) ('0' + seconds / 10);
+            text[4] = (char) ('0' + seconds % 10);
+            length = 5;
+            rasterize();
+        }
+
+        private void rasterize() {
+            textWidth = paint.measureText(text, 0, length);
+            int width = (int) Math.ceil(textWidth) + 2;
+            int height = (int) Math.ceil(paint.descent() - paint.ascent()) + 2;
+            if (bitmap == null || bitmap.getWidth() < width || bitmap.getHeight() < height) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                // Leave room for a few more digits before the next reallocation.
+                bitmap = Bitmap.createBitmap(width + (int) paint.getTextSize(), height,
+                        Bitmap.Config.ARGB_8888);
+                bitmapCanvas = new Canvas(bitmap);
+            }
+            bitmap.eraseColor(Color.TRANSPARENT);
+            bitmapCanvas.drawText(text, 0, length, 0, -paint.ascent(), paint);
+        }
+
+        float getTextWidth() {
+            return textWidth;
+        }
+
+        // Adds the area draw() covers at (x, baseline) to dirty, if there is anything to draw.
+        void addBounds(DirtyRegion dirty, float x, float baseline) {
+            if (dirty != null && bitmap != null) {
+                float top = baseline + paint.ascent();
+                dirty.add(x, top, x + bitmap.getWidth(), top + bitmap.getHeight());
+            }
+        }
+
+        // Draws the cached text with its baseline at (x, baseline).
+        void draw(Canvas c, float x, float baseline) {
+            if (bitmap != null) {
+                c.drawBitmap(bitmap, x, baseline + paint.ascent(), null);
+            }
+        }
+
+        // Writes value as decimal digits into buffer at pos and returns the new length.
+        private static int appendInt(char[] buffer, int pos, int value) {
+            long v = value;
+            if (v < 0) {
+                buffer[pos++] = '-';
+                v = -v;
+            }
+            int start = pos;
+            do {
+                buffer[pos++] = (char) ('0' + (v % 10));
+                v /= 10;
+            } while (v > 0);
+            // Digits were written least-significant first; reverse them.
+            for (int i = start, j = pos - 1; i < j; i++, j--) {
+                char tmp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = tmp;
+            }
+            return pos;
+        }
+    }
+}
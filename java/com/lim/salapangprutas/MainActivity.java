@@ -4,16 +4,31 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.graphics.Color;
+import android.util.Log;
+import android.view.View;
 import android.view.animation.Animation;
 import android.view.animation.ScaleAnimation;
 import android.widget.FrameLayout;
+import android.widget.ImageButton;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.ViewCompat;
 
 public class MainActivity extends AppCompatActivity {
+    // Boolean intent extra that starts the endless harvest storm stress mode, e.g.
+    // adb shell am start -n com.lim.salapangprutas/.MainActivity --ez storm true
+    public static final String EXTRA_STORM = "storm";
+
     private TextView countdownText;
     private FrameLayout gameContainer;
+    // Created by the first startGame() and reused for every later round.
+    private GamePanel gamePanel;
+    private View gameOverView;
+    private TextView finalScoreText;
+    private TextView bestScoresText;
+    // Rows of the best-scores list on the game-over screen.
+    private static final int TOP_SCORES_SHOWN = 5;
+    private final ScoreStore.Round[] topScores = new ScoreStore.Round[TOP_SCORES_SHOWN];
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -25,7 +40,50 @@ public class MainActivity extends AppCompatActivity {
         countdownText = findViewById(R.id.countdownTextView);
         gameContainer = findViewById(R.id.gameContainer); // This FrameLayout will host the game view.
 
-        startCountdown();
+        // Load sprites, background and sounds in the background while the countdown runs.
+        AssetPreloader.getInstance(this).start();
+        // Read the score history in the background too, ready for the first game over.
+        ScoreStore.getInstance(getFilesDir());
+        // A round cut short by the process being killed continues without the countdown,
+        // but still waits for the assets, so its first frames do not decode them again.
+        byte[] snapshot = GamePanel.loadSnapshot(this);
+        if (snapshot != null) {
+            countdownText.setText("");
+            AssetPreloader.getInstance(this).whenReady(() -> startGame(snapshot));
+        } else {
+            startCountdown();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (gamePanel != null) {
+            gamePanel.pause();
+        }
+        // The process may be killed in the background; write the latest rounds now.
+        ScoreStore.getInstance(getFilesDir()).flush();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (gamePanel != null) {
+            gamePanel.resume();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Leaving the game for good drops the round; only a round whose process was killed
+        // in the background is continued.
+        if (gamePanel != null) {
+            if (isFinishing()) {
+                gamePanel.discardSnapshot();
+            }
+            gamePanel.release();
+        }
+        super.onDestroy();
     }
 
     public void startCountdown() {
@@ -52,8 +110,11 @@ public class MainActivity extends AppCompatActivity {
 
             public void onFinish() {
                 new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                    countdownText.setText(""); // Hide countdown text
-                    startGame(); // Start the game
+                    // Start only once the assets are loaded; normally they already are.
+                    AssetPreloader.getInstance(MainActivity.this).whenReady(() -> {
+                        countdownText.setText(""); // Hide countdown text
+                        startGame(); // Start the game
+                    });
                 }, 1000);
             }
         }.start();
@@ -71,11 +132,78 @@ public class MainActivity extends AppCompatActivity {
         countdownText.startAnimation(scaleAnimation);
     }
 
-    // Made public so that GamePanel can call it when the player taps "Play Again".
+    // Made public so that the "Play Again" button can call it.
     public void startGame() {
+        startGame(null);
+    }
+
+    // Starts a new round, or continues the round saved in snapshot if it is not null.
+    private void startGame(byte[] snapshot) {
         runOnUiThread(() -> {
-            gameContainer.removeAllViews(); // Remove any existing views (countdown or previous game)
-            gameContainer.addView(new GamePanel(this)); // Add a new GamePanel to start the game
+            if (gamePanel != null) {
+                // Warm restart: the panel, its surface and all loaded assets are kept, and
+                // only the round is reset. Ignore repeated taps once the round is running.
+                if (gameOverView.getVisibility() == View.VISIBLE) {
+                    gameOverView.setVisibility(View.GONE);
+                    gamePanel.restart();
+                }
+                return;
+            }
+            gameContainer.removeAllViews(); // Remove any existing views (countdown)
+            gamePanel = new GamePanel(this);
+            gamePanel.setStormMode(getIntent().getBooleanExtra(EXTRA_STORM, false));
+            if (snapshot != null) {
+                gamePanel.restore(snapshot);
+            }
+            gameContainer.addView(gamePanel); // Add the GamePanel to start the game
+
+            // The game-over screen is inflated now, hidden above the game, so ending a round
+            // only has to make it visible.
+            gameOverView = getLayoutInflater().inflate(R.layout.game_over, gameContainer, false);
+            finalScoreText = gameOverView.findViewById(R.id.finalScoreTextView);
+            bestScoresText = gameOverView.findViewById(R.id.bestScoresTextView);
+            ImageButton playAgainButton = gameOverView.findViewById(R.id.playAgainButton);
+            playAgainButton.setOnClickListener(v -> startGame());
+            ImageButton mainMenuButton = gameOverView.findViewById(R.id.mainMenuButton);
+            //mainMenuButton.setOnClickListener(v -> openMainMenu());
+            gameOverView.setVisibility(View.GONE);
+            gameContainer.addView(gameOverView);
         });
     }
+
+    // Shows the game-over screen over the finished round. Called on the UI thread.
+    public void showGameOver(ScoreStore.Round round) {
+        finalScoreText.setText("Final Score: " + round.score);
+
+        // Answered from memory; the store never reads its file on this path.
+        long start = System.nanoTime();
+        ScoreStore scores = ScoreStore.getInstance(getFilesDir());
+        int rank = scores.getRank(round);
+        int shown = scores.getTop(round.storm, topScores, TOP_SCORES_SHOWN);
+        StringBuilder text = new StringBuilder();
+        if (rank == 1 && shown > 1) {
+            text.append("New best!\n");
+        } else if (rank > 1) {
+            text.append("#").append(rank).append(" of your best\n");
+        }
+        for (int i = 0; i < shown; i++) {
+            ScoreStore.Round top = topScores[i];
+            long seconds = top.playedMillis / 1000;
+            text.append(i + 1).append(". ").append(top.score)
+                    .append("   wave ").append(top.waveCount)
+                    .append("   ").append(seconds / 60).append(':')
+                    .append(seconds % 60 < 10 ? "0" : "").append(seconds % 60);
+            if (top == round) {
+                text.append("  <");
+            }
+            text.append('\n');
+        }
+        text.append(scores.getRoundCount()).append(" rounds, ")
+                .append(scores.getPlayedMillis() / 60_000).append(" min played");
+        bestScoresText.setText(text);
+        Log.d("MainActivity", "Best scores queried in " + (System.nanoTime() - start) / 1000
+                + " us, " + scores.getRoundCount() + " rounds stored, loaded in "
+                + scores.getLoadNanos() / 1000 + " us");
+        gameOverView.setVisibility(View.VISIBLE);
+    }
 }
@@ -0,0 +1,204 @@
+package com.lim.salapangprutas;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Movement and collisions for the storm mode's hundreds to thousands of objects, spread
+ * over several cores with fork/join. Per-object work (moving, edge bounces, centers) is
+ * split into index ranges. Pairs are resolved in the broadphase grid's rows: a row only
+ * touches objects binned in it and in the row below, so first all even rows run in
+ * parallel, then all odd rows. Inside a row, pairs are resolved in the same order as
+ * Collisions does, and rows running at the same time never share an object, so the
+ * result does not depend on the number of threads or on scheduling; only on the
+ * row-phase order, which differs from the sequential Collisions path.
+ * Not thread-safe; one simulation thread calls in at a time.
+ */
+public class ParallelPhysics {
+
+    // Below this many objects everything runs on the calling thread; forking costs more.
+    private static final int PARALLEL_MIN_OBJECTS = 512;
+    // Smallest index range handed to one task.
+    private static final int OBJECTS_PER_TASK = 256;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final SpatialGrid grid = new SpatialGrid();
+    private float[] centerX = new float[16];
+    private float[] centerY = new float[16];
+    private float[] radius = new float[16];
+    private float[] binX = new float[16];
+    private float[] binY = new float[16];
+    private int[] rowContacts = new int[16];  // Colliding pairs per grid row.
+
+    // Inputs of the current call, read by the tasks.
+    private EntityStore store;
+    private int screenWidth;
+    private boolean swept;
+    private boolean forking;  // Whether the current call splits its tasks.
+
+    /**
+     * @param parallelism Number of worker threads; 1 runs everything on the calling thread
+     *                    with the same results.
+     */
+    public ParallelPhysics(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // Moves and rotates every entity by one update, like EntityStore.updateAll().
+    public void integrate(EntityStore store) {
+        this.store = store;
+        run(new RangeTask(RangeTask.INTEGRATE, 0, store.count()), store.count());
+    }
+
+    /**
+     * Same checks and responses as Collisions.checkCollisions, always through the grid.
+     * Returns the number of colliding pairs.
+     */
+    public int checkCollisions(EntityStore store, int screenWidth, int screenHeight) {
+        int n = store.count();
+        this.store = store;
+        this.screenWidth = screenWidth;
+        this.swept = Collisions.isSweptEnabled();
+        if (centerX.length < n) {
+            int capacity = Math.max(n, centerX.length * 2);
+            centerX = new float[capacity];
+            centerY = new float[capacity];
+            radius = new float[capacity];
+            binX = new float[capacity];
+            binY = new float[capacity];
+        }
+
+        // Edge bounces, then centers and bin positions from the bounced positions.
+        run(new RangeTask(RangeTask.PREPARE, 0, n), n);
+
+        float cellSize = 1;
+        float maxPath = 0;
+        for (int i = 0; i < n; i++) {
+            cellSize = Math.max(cellSize, store.size[i]);
+            if (swept) {
+                float pathX = store.x[i] - store.prevX[i];
+                float pathY = store.y[i] - store.prevY[i];
+                maxPath = Math.max(maxPath, pathX * pathX + pathY * pathY);
+            }
+        }
+        if (swept) {
+            grid.build(binX, binY, n, cellSize + (float) Math.sqrt(maxPath), screenWidth, screenHeight);
+        } else {
+            grid.build(centerX, centerY, n, cellSize, screenWidth, screenHeight);
+        }
+
+        int rows = grid.getRows();
+        if (rowContacts.length < rows) {
+            rowContacts = new int[Math.max(rows, rowContacts.length * 2)];
+        }
+        for (int phase = 0; phase < 2; phase++) {
+            // Rows phase, phase + 2, phase + 4, ...
+            int slots = (rows - phase + 1) / 2;
+            run(new RowTask(phase, 0, slots), n);
+        }
+        // Each row task counted into its own slot, so no counter is shared between threads.
+        int contacts = 0;
+        for (int row = 0; row < rows; row++) {
+            contacts += rowContacts[row];
+        }
+        return contacts;
+    }
+
+    private void run(RecursiveAction task, int objects) {
+        forking = pool != null && objects >= PARALLEL_MIN_OBJECTS;
+        if (forking) {
+            pool.invoke(task);
+        } else {
+            task.invoke();
+        }
+    }
+
+    // Stops the worker threads. Calls made afterwards fail.
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Per-object work over an index range, split in halves down to OBJECTS_PER_TASK.
+     */
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int INTEGRATE = 0;
+        static final int PREPARE = 1;
+
+        private final int kind;
+        private final int from;
+        private final int to;
+
+        RangeTask(int kind, int from, int to) {
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (forking && to - from > OBJECTS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(kind, from, middle), new RangeTask(kind, middle, to));
+            } else if (kind == INTEGRATE) {
+                store.updateRange(from, to);
+            } else {
+                prepare(from, to);
+            }
+        }
+    }
+
+    private void prepare(int from, int to) {
+        Collisions.resolveBoundaries(store, from, to, screenWidth);
+        for (int i = from; i < to; i++) {
+            float r = store.size[i] / 2f;
+            radius[i] = r;
+            centerX[i] = store.x[i] + r;
+            centerY[i] = store.y[i] + r;
+            if (swept) {
+                binX[i] = centerX[i] - (store.x[i] - store.prevX[i]) / 2;
+                binY[i] = centerY[i] - (store.y[i] - store.prevY[i]) / 2;
+            }
+        }
+    }
+
+    /**
+     * Grid rows 2 * slot + phase for slot in from..to-1, split in halves down to one row.
+     */
+    private final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int phase;
+        private final int from;
+        private final int to;
+
+        RowTask(int phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (forking && to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(phase, from, middle), new RowTask(phase, middle, to));
+                return;
+            }
+            for (int slot = from; slot < to; slot++) {
+                int row = 2 * slot + phase;
+                rowContacts[row] = Collisions.testRow(store, grid, row, centerX, centerY, radius);
+            }
+        }
+    }
+}
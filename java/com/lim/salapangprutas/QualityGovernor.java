@@ -0,0 +1,222 @@
+package com.lim.salapangprutas;
+
+/**
+ * Trades rendering quality for frame rate on devices that cannot keep up. The game
+ * thread reports every presented frame; the governor looks at the frames in windows of
+ * WINDOW_FRAMES and moves one quality level down when too many of them missed the frame
+ * budget, and one level up only after several windows in a row left plenty of headroom.
+ * The gap between the two thresholds, plus an upgrade wait that doubles each time an
+ * upgrade has to be taken back, keeps the level from flapping.
+ *
+ * Levels are cumulative, each one adding a lever to the ones above it:
+ * <pre>
+ * 0 LEVEL_FULL         everything on
+ * 1 LEVEL_NO_FILTER    bitmaps drawn without filtering
+ * 2 LEVEL_SLOW_HUD     HUD refreshed a few times a second instead of every frame
+ * 3 LEVEL_NO_ROTATION  sprites drawn upright
+ * 4 LEVEL_REDUCED_RES  rendered at 3/4 resolution and scaled up by the display
+ * 5 LEVEL_HALF_RES     rendered at 1/2 resolution
+ * </pre>
+ * Game thread only, apart from the getters, which may lag a frame behind.
+ */
+public class QualityGovernor {
+
+    public static final int LEVEL_FULL = 0;
+    public static final int LEVEL_NO_FILTER = 1;
+    public static final int LEVEL_SLOW_HUD = 2;
+    public static final int LEVEL_NO_ROTATION = 3;
+    public static final int LEVEL_REDUCED_RES = 4;
+    public static final int LEVEL_HALF_RES = 5;
+    public static final int LEVEL_COUNT = 6;
+
+    private static final String[] LEVEL_NAMES = {
+            "full", "noFilter", "slowHud", "noRotation", "reducedRes", "halfRes"
+    };
+
+    // About half a second at 60 Hz.
+    private static final int WINDOW_FRAMES = 30;
+    // Down a level when more than this many frames of a window are jank (1.5x budget),
+    // the same threshold the FrameProfiler counts.
+    private static final int DOWNGRADE_JANK_FRAMES = 5;
+    // Up a level when at most this many frames of a window took more than half the budget
+    // to produce (not counting the wait for a buffer), i.e. the p90 work time is under it.
+    private static final int UPGRADE_BUSY_FRAMES = 3;
+    // Good windows in a row needed for an upgrade, at first and at most.
+    private static final int UPGRADE_WINDOWS = 4;
+    private static final int MAX_UPGRADE_WINDOWS = 64;
+
+    private static final long SLOW_HUD_REFRESH_NANOS = 250_000_000L;
+
+    public interface Listener {
+        // Called after the level changed, on the thread that reported the frame or
+        // turned adapting off.
+        void onQualityChanged(int oldLevel, int newLevel);
+    }
+
+    private Listener listener;
+    private volatile boolean enabled = true;
+    private volatile int level = LEVEL_FULL;
+
+    // The current window.
+    private int windowFrames = 0;
+    private int windowJankFrames = 0;
+    private int windowBusyFrames = 0;
+    private int goodWindows = 0;
+    private int upgradeWindows = UPGRADE_WINDOWS;
+    private int lastChange = 0;  // +1 after a downgrade, -1 after an upgrade.
+
+    // Metrics.
+    private volatile int downgrades = 0;
+    private volatile int upgrades = 0;
+    private final long[] levelNanos = new long[LEVEL_COUNT];
+    private volatile int lowestLevel = LEVEL_FULL;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Turns adapting on or off. Turning it off goes back to full quality.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            changeLevel(LEVEL_FULL);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String levelName(int level) {
+        return LEVEL_NAMES[level];
+    }
+
+    /**
+     * Reports a presented frame.
+     *
+     * @param intervalNanos Time since the previous frame.
+     * @param workNanos     Time the game thread spent producing the frame, without waiting
+     *                      for a buffer.
+     * @param budgetNanos   The display's frame period.
+     */
+    public void onFrame(long intervalNanos, long workNanos, long budgetNanos) {
+        levelNanos[level] += intervalNanos;
+        if (!enabled) {
+            return;
+        }
+        windowFrames++;
+        if (intervalNanos > budgetNanos + budgetNanos / 2) {
+            windowJankFrames++;
+        }
+        if (workNanos > budgetNanos / 2) {
+            windowBusyFrames++;
+        }
+        if (windowFrames < WINDOW_FRAMES) {
+            return;
+        }
+
+        if (windowJankFrames > DOWNGRADE_JANK_FRAMES) {
+            goodWindows = 0;
+            if (level < LEVEL_COUNT - 1) {
+                if (lastChange < 0) {
+                    // The last upgrade was too much; be slower to try again.
+                    upgradeWindows = Math.min(upgradeWindows * 2, MAX_UPGRADE_WINDOWS);
+                }
+                lastChange = 1;
+                downgrades++;
+                changeLevel(level + 1);
+            }
+        } else if (windowJankFrames == 0 && windowBusyFrames <= UPGRADE_BUSY_FRAMES) {
+            goodWindows++;
+            if (goodWindows >= upgradeWindows && level > LEVEL_FULL) {
+                goodWindows = 0;
+                lastChange = -1;
+                upgrades++;
+                changeLevel(level - 1);
+            }
+        } else {
+            goodWindows = 0;
+        }
+        resetWindow();
+    }
+
+    /**
+     * Discards the frames of the current window, e.g. after the loop was restarted and
+     * its first frames are not representative.
+     */
+    public void resetWindow() {
+        windowFrames = 0;
+        windowJankFrames = 0;
+        windowBusyFrames = 0;
+    }
+
+    private void changeLevel(int newLevel) {
+        int oldLevel = level;
+        if (newLevel == oldLevel) {
+            return;
+        }
+        level = newLevel;
+        lowestLevel = Math.max(lowestLevel, newLevel);
+        if (listener != null) {
+            listener.onQualityChanged(oldLevel, newLevel);
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isFilteringEnabled() {
+        return level < LEVEL_NO_FILTER;
+    }
+
+    // Minimum time between HUD updates; 0 updates every frame.
+    public long getHudRefreshNanos() {
+        return level >= LEVEL_SLOW_HUD ? SLOW_HUD_REFRESH_NANOS : 0;
+    }
+
+    public boolean isRotationEnabled() {
+        return level < LEVEL_NO_ROTATION;
+    }
+
+    // Surface resolution relative to the view.
+    public float getRenderScale() {
+        if (level >= LEVEL_HALF_RES) {
+            return 0.5f;
+        }
+        return level >= LEVEL_REDUCED_RES ? 0.75f : 1f;
+    }
+
+    public int getDowngradeCount() {
+        return downgrades;
+    }
+
+    public int getUpgradeCount() {
+        return upgrades;
+    }
+
+    // The lowest quality (highest level) reached so far.
+    public int getLowestLevel() {
+        return lowestLevel;
+    }
+
+    // Total frame time spent at a level.
+    public long getLevelNanos(int level) {
+        return levelNanos[level];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("level ").append(LEVEL_NAMES[level])
+                .append(", lowest ").append(LEVEL_NAMES[lowestLevel])
+                .append(", ").append(downgrades).append(" down, ")
+                .append(upgrades).append(" up; time per level");
+        for (int l = 0; l < LEVEL_COUNT; l++) {
+            sb.append(' ').append(LEVEL_NAMES[l]).append('=').append(levelNanos[l] / 1_000_000).append("ms");
+        }
+        return sb.toString();
+    }
+}
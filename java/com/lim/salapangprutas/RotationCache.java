@@ -0,0 +1,163 @@
+package com.lim.salapangprutas;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Pre-rotated copies of the sprites at a fixed number of quantized angles, so a rotated
+ * object can be drawn as a plain unrotated blit instead of a filtered rotated one.
+ * Frames are rendered lazily, the first time an angle is needed, and only while the
+ * memory budget allows; past that, frame() returns null and the caller rotates on the
+ * canvas as before. The step count is fixed by the caller rather than derived from the
+ * budget: sprite sizes depend on the screen and are not known when the cache is made.
+ */
+public class RotationCache {
+
+    private final int steps;
+    private final float degreesPerStep;
+    private final long budgetBytes;
+    private long usedBytes = 0;
+    private int frameCount = 0;
+    private int budgetMisses = 0;  // Frames that found no room, each counted once.
+
+    // Frames per base sprite, indexed by angle step. Base sprites are the shared
+    // SpriteCache bitmaps, so identity is the right key. A slot holding the base sprite
+    // itself marks a frame that did not fit, so it is not tried again every draw.
+    private final IdentityHashMap<Bitmap, Bitmap[]> frames = new IdentityHashMap<>();
+    private final Matrix matrix = new Matrix();
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * @param steps       Number of angles per sprite (e.g. 32 = every 11.25 degrees).
+     * @param budgetBytes Maximum memory for all frames together.
+     */
+    public RotationCache(int steps, long budgetBytes) {
+        this.steps = Math.max(1, steps);
+        this.degreesPerStep = 360f / this.steps;
+        this.budgetBytes = budgetBytes;
+    }
+
+    // A square large enough to hold the sprite at any rotation.
+    private static int frameSizeFor(int width, int height) {
+        return (int) Math.ceil(Math.sqrt((double) width * width + (double) height * height));
+    }
+
+    /**
+     * Returns base rotated by angle (rounded to the nearest step), or null if the frame
+     * would not fit in the budget. The frame is square and centered on the sprite's center.
+     */
+    public Bitmap frame(Bitmap base, float angle) {
+        int step = Math.round(angle / degreesPerStep) % steps;
+        if (step < 0) {
+            step += steps;
+        }
+
+        Bitmap[] spriteFrames = frames.get(base);
+        if (spriteFrames == null) {
+            spriteFrames = new Bitmap[steps];
+            frames.put(base, spriteFrames);
+        }
+        Bitmap frame = spriteFrames[step];
+        if (frame == null) {
+            frame = render(base, step * degreesPerStep);
+            spriteFrames[step] = frame != null ? frame : base;
+        }
+        return frame != base ? frame : null;
+    }
+
+    private Bitmap render(Bitmap base, float degrees) {
+        int width = base.getWidth();
+        int height = base.getHeight();
+        int frameSize = frameSizeFor(width, height);
+        long bytes = (long) frameSize * frameSize * 4;
+        if (usedBytes + bytes > budgetBytes) {
+            budgetMisses++;
+            return null;
+        }
+
+        Bitmap frame = Bitmap.createBitmap(frameSize, frameSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(frame);
+        matrix.setRotate(degrees, width / 2f, height / 2f);
+        matrix.postTranslate((frameSize - width) / 2f, (frameSize - height) / 2f);
+        // Filtering happens once here instead of on every frame.
+        canvas.drawBitmap(base, matrix, filterPaint);
+
+        usedBytes += bytes;
+        frameCount++;
+        return frame;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getBudgetMisses() {
+        return budgetMisses;
+    }
+
+    /**
+     * Releases the frames of a base sprite that is no longer drawn, e.g. after it was
+     * replaced by a copy at another size, so they stop counting against the budget.
+     */
+    public void remove(Bitmap base) {
+        Bitmap[] spriteFrames = frames.remove(base);
+        if (spriteFrames == null) {
+            return;
+        }
+        long bytes = (long) frameSizeFor(base.getWidth(), base.getHeight())
+                * frameSizeFor(base.getWidth(), base.getHeight()) * 4;
+        boolean freed = false;
+        for (Bitmap frame : spriteFrames) {
+            if (frame != null && frame != base) {
+                frame.recycle();
+                usedBytes -= bytes;
+                frameCount--;
+                freed = true;
+            }
+        }
+        if (freed) {
+            // Frames that found no room before may fit now.
+            for (Map.Entry<Bitmap, Bitmap[]> entry : frames.entrySet()) {
+                Bitmap[] others = entry.getValue();
+                for (int step = 0; step < others.length; step++) {
+                    if (others[step] == entry.getKey()) {
+                        others[step] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    // Releases every frame.
+    public void clear() {
+        for (Map.Entry<Bitmap, Bitmap[]> entry : frames.entrySet()) {
+            Bitmap base = entry.getKey();
+            for (Bitmap frame : entry.getValue()) {
+                // The base sprites belong to the SpriteCache.
+                if (frame != null && frame != base) {
+                    frame.recycle();
+                }
+            }
+        }
+        frames.clear();
+        usedBytes = 0;
+        frameCount = 0;
+    }
+}
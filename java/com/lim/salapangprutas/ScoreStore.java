@@ -0,0 +1,537 @@
+package com.lim.salapangprutas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The player's finished rounds, kept on the device: best scores, and per round the score,
+ * waves reached and time played.
+ *
+ * Rounds are kept in memory in a ranking per mode and a short recent history, so the
+ * game-over screen's queries never touch the disk. add() only updates those; the file is
+ * written behind, on the store's own thread, in batches: a few seconds after the first
+ * unwritten round, at once when FLUSH_BATCH rounds are waiting, or on flush(). The file is
+ * append-only; once it holds COMPACT_RECORDS records it is rewritten with only the rounds
+ * that can still show up in a query, and the rest folded into a totals record.
+ *
+ * Format (big-endian):
+ * <pre>
+ * header: int MAGIC, byte VERSION
+ * then records, each starting with a tag byte:
+ *   TAG_ROUND:  long endedAtMillis, long seed, int score, int waveCount,
+ *               long playedMillis, byte livesLeft, byte 1 if storm mode
+ *   TAG_TOTALS: long rounds, long playedMillis (of rounds dropped by compaction)
+ * </pre>
+ * A record cut short by the process dying mid-write is dropped on the next load.
+ * Thread-safe.
+ */
+public class ScoreStore {
+
+    private static ScoreStore instance;
+
+    static final String FILE_NAME = "scores.log";
+    static final int MAGIC = 0x53414C48;  // "SALH"
+    static final int VERSION = 1;
+    static final int TAG_ROUND = 1;
+    static final int TAG_TOTALS = 2;
+    private static final int HEADER_BYTES = 5;
+    private static final int ROUND_BYTES = 1 + 34;
+    private static final int TOTALS_BYTES = 1 + 16;
+
+    // Rounds ranked per mode, and how many of the latest rounds are remembered.
+    public static final int RANKING_SIZE = 100;
+    public static final int RECENT_SIZE = 20;
+
+    private static final long FLUSH_DELAY_MILLIS = 5000;
+    private static final int FLUSH_BATCH = 16;
+    // Records in the file that trigger a compaction, and the latest rounds it keeps on top
+    // of the ranked ones.
+    private static final int COMPACT_RECORDS = 8192;
+    private static final int COMPACT_KEEP_RECENT = 2048;
+
+    /**
+     * One finished round.
+     */
+    public static final class Round {
+        public final long endedAtMillis;  // Wall clock.
+        public final long seed;
+        public final int score;
+        public final int waveCount;
+        public final long playedMillis;
+        public final int livesLeft;
+        public final boolean storm;
+
+        public Round(long endedAtMillis, long seed, int score, int waveCount, long playedMillis,
+                     int livesLeft, boolean storm) {
+            this.endedAtMillis = endedAtMillis;
+            this.seed = seed;
+            this.score = score;
+            this.waveCount = waveCount;
+            this.playedMillis = playedMillis;
+            this.livesLeft = livesLeft;
+            this.storm = storm;
+        }
+
+        // The round simulation just finished.
+        public static Round of(GameSimulation simulation, long endedAtMillis) {
+            return new Round(endedAtMillis, simulation.getSeed(), simulation.getScore(),
+                    simulation.getWaveCount(), simulation.getElapsedMillis(),
+                    Math.max(0, simulation.getLives()), simulation.isStorm());
+        }
+    }
+
+    // Highest score first; among equal scores the one reached first keeps its place.
+    static final Comparator<Round> BY_RANK = (a, b) -> a.score != b.score
+            ? Integer.compare(b.score, a.score)
+            : Long.compare(a.endedAtMillis, b.endedAtMillis);
+
+    /**
+     * The best RANKING_SIZE rounds of a mode, sorted by BY_RANK.
+     */
+    private static final class Ranking {
+        final Round[] rounds = new Round[RANKING_SIZE];
+        int count = 0;
+
+        void offer(Round round) {
+            if (count == RANKING_SIZE && BY_RANK.compare(round, rounds[count - 1]) >= 0) {
+                return;
+            }
+            int at = Arrays.binarySearch(rounds, 0, count, round, BY_RANK);
+            if (at < 0) {
+                at = -at - 1;
+            }
+            int moved = Math.min(count, RANKING_SIZE - 1) - at;
+            System.arraycopy(rounds, at, rounds, at + 1, moved);
+            rounds[at] = round;
+            count = Math.min(count + 1, RANKING_SIZE);
+        }
+
+        boolean contains(Round round) {
+            return count > 0 && BY_RANK.compare(round, rounds[count - 1]) <= 0;
+        }
+    }
+
+    private final File file;
+    private final ScheduledExecutorService io;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    // In memory, guarded by this.
+    private final Ranking normalRanking = new Ranking();
+    private final Ranking stormRanking = new Ranking();
+    private final Round[] recent = new Round[RECENT_SIZE];  // Ring; recentCount is the total.
+    private long recentCount = 0;
+    private long rounds = 0;
+    private long playedMillis = 0;
+    private final List<Round> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    // The file, touched only on the store's thread; volatile for the metrics.
+    private volatile long fileRecords = 0;
+    private volatile long fileBytes = 0;
+    private volatile long loadNanos = 0;
+    private volatile long lastFlushNanos = 0;
+    private volatile long lastCompactNanos = 0;
+    private volatile int flushes = 0;
+    private volatile int compactions = 0;
+    private volatile String lastError;
+
+    /**
+     * A store backed by file. Nothing is read until start().
+     */
+    public ScoreStore(File file) {
+        this.file = file;
+        this.io = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ScoreStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Singleton instance getter, for the app's files directory.
+    public static synchronized ScoreStore getInstance(File filesDir) {
+        if (instance == null) {
+            instance = new ScoreStore(new File(filesDir, FILE_NAME));
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the file in the background. Rounds added before it finishes are kept and
+     * merged with the loaded ones.
+     */
+    public void start() {
+        io.execute(() -> {
+            try {
+                load();
+            } finally {
+                loaded.countDown();
+            }
+        });
+    }
+
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return loaded.await(timeout, unit);
+    }
+
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Adds a finished round. Only updates memory; safe on any thread, including the UI
+     * thread during the game-over transition.
+     */
+    public synchronized void add(Round round) {
+        index(round);
+        pending.add(round);
+        if (pending.size() >= FLUSH_BATCH) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = io.schedule(this::write, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the waiting rounds now, in the background, e.g. when the app goes to the
+     * background and may be killed.
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (!pending.isEmpty()) {
+            io.execute(this::write);
+        }
+    }
+
+    private void index(Round round) {
+        (round.storm ? stormRanking : normalRanking).offer(round);
+        recent[(int) (recentCount++ % RECENT_SIZE)] = round;
+        rounds++;
+        playedMillis += round.playedMillis;
+    }
+
+    /**
+     * Copies up to max of the best rounds of a mode into out, best first, and returns how
+     * many were copied.
+     */
+    public synchronized int getTop(boolean storm, Round[] out, int max) {
+        Ranking ranking = storm ? stormRanking : normalRanking;
+        int n = Math.min(Math.min(max, out.length), ranking.count);
+        System.arraycopy(ranking.rounds, 0, out, 0, n);
+        return n;
+    }
+
+    // The best score of a mode, or 0 if no round was played in it.
+    public synchronized int getBestScore(boolean storm) {
+        Ranking ranking = storm ? stormRanking : normalRanking;
+        return ranking.count > 0 ? ranking.rounds[0].score : 0;
+    }
+
+    /**
+     * The 1-based place round takes in its mode's ranking, or 0 if it is not among the best
+     * RANKING_SIZE.
+     */
+    public synchronized int getRank(Round round) {
+        Ranking ranking = round.storm ? stormRanking : normalRanking;
+        for (int i = 0; i < ranking.count; i++) {
+            if (ranking.rounds[i] == round) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copies up to max of the latest rounds into out, latest first, and returns how many
+     * were copied.
+     */
+    public synchronized int getRecent(Round[] out, int max) {
+        int n = (int) Math.min(Math.min(max, out.length), Math.min(recentCount, RECENT_SIZE));
+        for (int i = 0; i < n; i++) {
+            out[i] = recent[(int) ((recentCount - 1 - i) % RECENT_SIZE)];
+        }
+        return n;
+    }
+
+    public synchronized long getRoundCount() {
+        return rounds;
+    }
+
+    public synchronized long getPlayedMillis() {
+        return playedMillis;
+    }
+
+    // Time the last load took to read and index the file.
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * Reads the file into memory. Runs on the store's thread; called directly only by
+     * benchmarks.
+     */
+    void load() {
+        long start = System.nanoTime();
+        List<Round> stored = new ArrayList<>();
+        long[] totals = new long[2];
+        long length = 0;
+        if (file.exists()) {
+            try {
+                length = read(file, stored, totals);
+                if (length < file.length()) {
+                    // A write was cut short; drop the partial record so appends line up.
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                        raf.setLength(length);
+                    }
+                }
+            } catch (IOException e) {
+                // Not ours, or damaged beyond the last record; start over, keeping the
+                // old file for inspection.
+                lastError = "Unreadable " + file + ": " + e;
+                stored.clear();
+                totals[0] = totals[1] = 0;
+                length = 0;
+                file.renameTo(new File(file.getPath() + ".bad"));
+            }
+        }
+        synchronized (this) {
+            // Rounds added while loading are newer than any stored one.
+            Round[] added = new Round[(int) Math.min(recentCount, RECENT_SIZE)];
+            getRecent(added, added.length);
+            recentCount = 0;
+            for (Round round : stored) {
+                index(round);
+            }
+            for (int i = added.length - 1; i >= 0; i--) {
+                recent[(int) (recentCount++ % RECENT_SIZE)] = added[i];
+            }
+            rounds += totals[0];
+            playedMillis += totals[1];
+        }
+        fileRecords = stored.size() + (totals[0] > 0 ? 1 : 0);
+        fileBytes = length;
+        loadNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Reads every complete record of file into rounds and totals (rounds, playedMillis) and
+     * returns the length they take up.
+     */
+    private static long read(File file, List<Round> rounds, long[] totals) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 64 * 1024))) {
+            long length = file.length();
+            if (length < HEADER_BYTES) {
+                return 0;
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a score file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported score file version " + version);
+            }
+            long pos = HEADER_BYTES;
+            while (pos < length) {
+                int tag = in.readUnsignedByte();
+                try {
+                    if (tag == TAG_ROUND) {
+                        long endedAt = in.readLong();
+                        long seed = in.readLong();
+                        int score = in.readInt();
+                        int waves = in.readInt();
+                        long played = in.readLong();
+                        int lives = in.readUnsignedByte();
+                        boolean storm = in.readUnsignedByte() != 0;
+                        rounds.add(new Round(endedAt, seed, score, waves, played, lives, storm));
+                        pos += ROUND_BYTES;
+                    } else if (tag == TAG_TOTALS) {
+                        totals[0] += in.readLong();
+                        totals[1] += in.readLong();
+                        pos += TOTALS_BYTES;
+                    } else {
+                        throw new IOException("Unknown score record " + tag + " at byte " + pos);
+                    }
+                } catch (EOFException e) {
+                    break;  // Cut short; everything before pos is intact.
+                }
+            }
+            return pos;
+        }
+    }
+
+    // Appends the waiting rounds. Runs on the store's thread.
+    private void write() {
+        List<Round> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        long start = System.nanoTime();
+        boolean fresh = fileBytes == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, !fresh)))) {
+            if (fresh) {
+                writeHeader(out);
+            }
+            for (Round round : batch) {
+                writeRound(out, round);
+            }
+        } catch (IOException e) {
+            lastError = "Could not write " + file + ": " + e;
+            synchronized (this) {
+                // Retried with the next batch.
+                pending.addAll(0, batch);
+            }
+            return;
+        }
+        fileBytes = (fresh ? HEADER_BYTES : fileBytes) + (long) batch.size() * ROUND_BYTES;
+        fileRecords += batch.size();
+        flushes++;
+        lastFlushNanos = System.nanoTime() - start;
+        if (fileRecords >= COMPACT_RECORDS) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with the rounds a query can still return (the ranked ones) plus
+     * the latest COMPACT_KEEP_RECENT, in their original order, and folds the rest into a
+     * totals record. Written beside the file and renamed over it, so a crash leaves one or
+     * the other intact. Runs on the store's thread.
+     */
+    private void compact() {
+        long start = System.nanoTime();
+        List<Round> stored = new ArrayList<>();
+        long[] totals = new long[2];
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            read(file, stored, totals);
+            Ranking normal = new Ranking();
+            Ranking storm = new Ranking();
+            for (Round round : stored) {
+                (round.storm ? storm : normal).offer(round);
+            }
+            List<Round> kept = new ArrayList<>();
+            int recentFrom = stored.size() - COMPACT_KEEP_RECENT;
+            for (int i = 0; i < stored.size(); i++) {
+                Round round = stored.get(i);
+                if (i >= recentFrom || (round.storm ? storm : normal).contains(round)) {
+                    kept.add(round);
+                } else {
+                    totals[0]++;
+                    totals[1] += round.playedMillis;
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)))) {
+                writeHeader(out);
+                out.writeByte(TAG_TOTALS);
+                out.writeLong(totals[0]);
+                out.writeLong(totals[1]);
+                for (Round round : kept) {
+                    writeRound(out, round);
+                }
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            fileRecords = kept.size() + 1;
+            fileBytes = HEADER_BYTES + TOTALS_BYTES + (long) kept.size() * ROUND_BYTES;
+            compactions++;
+            lastCompactNanos = System.nanoTime() - start;
+        } catch (IOException e) {
+            // The file is still complete, only longer; compaction is tried after the next
+            // write again.
+            lastError = "Could not compact " + file + ": " + e;
+            temp.delete();
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    private static void writeRound(DataOutputStream out, Round round) throws IOException {
+        out.writeByte(TAG_ROUND);
+        out.writeLong(round.endedAtMillis);
+        out.writeLong(round.seed);
+        out.writeInt(round.score);
+        out.writeInt(round.waveCount);
+        out.writeLong(round.playedMillis);
+        out.writeByte(round.livesLeft);
+        out.writeByte(round.storm ? 1 : 0);
+    }
+
+    /**
+     * Writes the waiting rounds and waits until the file is up to date; for benchmarks
+     * and shutdown paths, never the UI thread.
+     */
+    void flushAndWait() throws InterruptedException {
+        try {
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            io.submit(this::write).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Stops the store's thread; rounds not yet written are lost.
+    public void shutdown() {
+        io.shutdown();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Scores: ").append(rounds).append(" rounds, ")
+                .append(playedMillis / 60_000).append(" min played, best ")
+                .append(getBestScore(false)).append(" (storm ").append(getBestScore(true))
+                .append("); file ").append(fileRecords).append(" records, ")
+                .append(fileBytes / 1024).append(" KB, loaded in ")
+                .append(loadNanos / 1000).append(" us, last write ")
+                .append(lastFlushNanos / 1000).append(" us, ")
+                .append(flushes).append(" writes, ").append(compactions).append(" compactions");
+        if (compactions > 0) {
+            sb.append(" (last ").append(lastCompactNanos / 1000).append(" us)");
+        }
+        if (!pending.isEmpty()) {
+            sb.append(", ").append(pending.size()).append(" waiting");
+        }
+        if (lastError != null) {
+            sb.append("; ").append(lastError);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,192 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records everything a GameSimulation consumed during a session, so SessionReplayer can
+ * play it again off-device: the session seed, variant counts, duration, screen size, and
+ * for every step() the elapsed time and the touch segments. With the simulation being
+ * deterministic, that reproduces the session tick for tick.
+ * Records are appended to a growable in-memory buffer on the game thread, without
+ * allocating once the buffer has grown, and written out with writeTo().
+ *
+ * Format (big-endian; varints are unsigned LEB128):
+ * <pre>
+ * header: int MAGIC, byte VERSION, long seed, byte fruit/flower/pest variants,
+ *         varint durationMillis, varint screenWidth, varint screenHeight,
+ *         varint stormObjects, byte 1 if ParallelPhysics was used (version 2 and up)
+ * then records, each starting with a tag byte:
+ *   TAG_STEP:   varint dtNanos, varint touchCount, per touch a byte of flags, then
+ *               float x, y (a tap) or with flag 1 float x0, y0, x1, y1 (a segment),
+ *               then with flag 2 (version 3 and up) float lagTicks
+ *   TAG_SCREEN: varint width, varint height
+ *   TAG_END:    varint score, varint lives, varint waveCount, varint elapsedMillis
+ * </pre>
+ * A typical two-minute session is a few tens of kilobytes.
+ */
+public class SessionRecorder {
+
+    static final int MAGIC = 0x53414C53;  // "SALS"
+    static final int VERSION = 3;
+    static final int TAG_STEP = 0;
+    static final int TAG_SCREEN = 1;
+    static final int TAG_END = 2;
+
+    private byte[] buffer = new byte[16 * 1024];
+    private int length = 0;
+    private int recordedWidth;
+    private int recordedHeight;
+    private boolean recording = false;
+
+    /**
+     * Starts a new recording for a simulation that has just been created or reset and
+     * has its screen size set. Any previous recording is discarded.
+     */
+    public void begin(GameSimulation simulation) {
+        length = 0;
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeLong(simulation.getSeed());
+        writeByte(simulation.getFruitVariants());
+        writeByte(simulation.getFlowerVariants());
+        writeByte(simulation.getPestVariants());
+        writeVarint(simulation.getDurationMillis());
+        recordedWidth = simulation.getScreenWidth();
+        recordedHeight = simulation.getScreenHeight();
+        writeVarint(recordedWidth);
+        writeVarint(recordedHeight);
+        // The thread count does not change the game, only whether the parallel path ran.
+        writeVarint(simulation.getStormObjects());
+        writeByte(simulation.getParallelism() > 0 ? 1 : 0);
+        recording = true;
+    }
+
+    /**
+     * Records one step() call. Call right before the step, with the same arguments. A
+     * screen size change since the last step is recorded first.
+     */
+    public void recordStep(GameSimulation simulation, long dtNanos, TouchBuffer touches) {
+        if (!recording) {
+            return;
+        }
+        if (simulation.getScreenWidth() != recordedWidth
+                || simulation.getScreenHeight() != recordedHeight) {
+            recordedWidth = simulation.getScreenWidth();
+            recordedHeight = simulation.getScreenHeight();
+            writeByte(TAG_SCREEN);
+            writeVarint(recordedWidth);
+            writeVarint(recordedHeight);
+        }
+        writeByte(TAG_STEP);
+        writeVarint(dtNanos);
+        int count = touches != null ? touches.count() : 0;
+        writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            float x0 = touches.startX(i);
+            float y0 = touches.startY(i);
+            float x1 = touches.x(i);
+            float y1 = touches.y(i);
+            float lag = touches.lagTicks(i);
+            boolean tap = x0 == x1 && y0 == y1;
+            writeByte((tap ? 0 : 1) | (lag != 0 ? 2 : 0));
+            if (tap) {
+                writeFloat(x1);
+                writeFloat(y1);
+            } else {
+                writeFloat(x0);
+                writeFloat(y0);
+                writeFloat(x1);
+                writeFloat(y1);
+            }
+            if (lag != 0) {
+                writeFloat(lag);
+            }
+        }
+    }
+
+    /**
+     * Ends the recording with the session's outcome, which the replayer checks its own
+     * result against. Returns false if nothing was being recorded.
+     */
+    public boolean finish(GameSimulation simulation) {
+        if (!recording) {
+            return false;
+        }
+        writeByte(TAG_END);
+        writeVarint(simulation.getScore());
+        writeVarint(Math.max(0, simulation.getLives()));
+        writeVarint(simulation.getWaveCount());
+        writeVarint(simulation.getElapsedMillis());
+        recording = false;
+        return true;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    // Bytes recorded so far.
+    public int size() {
+        return length;
+    }
+
+    // Returns a copy of the recording, e.g. to hand it to a writer thread.
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(buffer, 0, copy, 0, length);
+        return copy;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    // Writes a finished recording to a file, replacing it. Call off the game thread.
+    public static void write(byte[] recording, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(recording);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeFloat(float value) {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+}
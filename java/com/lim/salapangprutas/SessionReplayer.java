@@ -0,0 +1,290 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Plays a SessionRecorder recording back through a fresh GameSimulation, without a
+ * device or a screen. The recording is decoded once up front, so replay() only costs
+ * the simulation itself and can be run repeatedly, e.g. as a benchmark, with a
+ * FrameProfiler collecting the per-phase times. Whether the replay reached the recorded
+ * outcome is checked with matches().
+ */
+public class SessionReplayer {
+
+    private final long seed;
+    private final int fruitVariants;
+    private final int flowerVariants;
+    private final int pestVariants;
+    private final long durationMillis;
+    private final int screenWidth;
+    private final int screenHeight;
+    private final int stormObjects;
+    private final boolean parallel;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Step i ran for stepNanos[i] with the touches touchStart[i] until touchStart[i + 1],
+    // each stored as x0, y0, x1, y1 in touchCoords, with its lag in touchLags.
+    private int stepCount = 0;
+    private long[] stepNanos = new long[1024];
+    private int[] touchStart = new int[1025];
+    private int touchCount = 0;
+    private float[] touchCoords = new float[4 * 256];
+    private float[] touchLags = new float[256];
+
+    // Screen size changes, applied before the step they were recorded with.
+    private int screenChanges = 0;
+    private int[] screenChangeStep = new int[4];
+    private int[] screenChangeWidth = new int[4];
+    private int[] screenChangeHeight = new int[4];
+
+    private boolean complete = false;
+    private int recordedScore;
+    private int recordedLives;
+    private int recordedWaveCount;
+    private long recordedElapsedMillis;
+
+    // Decoding position in the recording.
+    private byte[] data;
+    private int pos;
+
+    /**
+     * Decodes a recording. Throws IOException if it is not a recording or is cut short;
+     * a recording without an end (the round was not finished) can still be replayed.
+     */
+    public SessionReplayer(byte[] recording) throws IOException {
+        data = recording;
+        pos = 0;
+        if (readInt() != SessionRecorder.MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+        int version = readByte();
+        if (version < 1 || version > SessionRecorder.VERSION) {
+            throw new IOException("Unsupported session recording version " + version);
+        }
+        seed = readLong();
+        fruitVariants = readByte();
+        flowerVariants = readByte();
+        pestVariants = readByte();
+        durationMillis = readVarint();
+        screenWidth = (int) readVarint();
+        screenHeight = (int) readVarint();
+        if (version >= 2) {
+            stormObjects = (int) readVarint();
+            parallel = readByte() != 0;
+        } else {
+            stormObjects = 0;
+            parallel = false;
+        }
+
+        while (pos < data.length && !complete) {
+            int tag = readByte();
+            if (tag == SessionRecorder.TAG_STEP) {
+                readStep();
+            } else if (tag == SessionRecorder.TAG_SCREEN) {
+                readScreenChange();
+            } else if (tag == SessionRecorder.TAG_END) {
+                recordedScore = (int) readVarint();
+                recordedLives = (int) readVarint();
+                recordedWaveCount = (int) readVarint();
+                recordedElapsedMillis = readVarint();
+                complete = true;
+            } else {
+                throw new IOException("Unknown record " + tag + " at byte " + (pos - 1));
+            }
+        }
+        data = null;
+    }
+
+    public static SessionReplayer read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] recording = new byte[(int) file.length()];
+            int read = 0;
+            while (read < recording.length) {
+                int n = in.read(recording, read, recording.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            return new SessionReplayer(Arrays.copyOf(recording, read));
+        }
+    }
+
+    private void readStep() throws IOException {
+        if (stepCount == stepNanos.length) {
+            stepNanos = Arrays.copyOf(stepNanos, stepCount * 2);
+            touchStart = Arrays.copyOf(touchStart, stepCount * 2 + 1);
+        }
+        stepNanos[stepCount] = readVarint();
+        int count = (int) readVarint();
+        if (count > TouchBuffer.CAPACITY) {
+            throw new IOException("Step " + stepCount + " has " + count + " touches");
+        }
+        if (touchCount + count > touchLags.length) {
+            int capacity = Math.max(touchLags.length * 2, touchCount + count);
+            touchCoords = Arrays.copyOf(touchCoords, 4 * capacity);
+            touchLags = Arrays.copyOf(touchLags, capacity);
+        }
+        for (int t = 0; t < count; t++) {
+            int flags = readByte();
+            if (flags > 3) {
+                throw new IOException("Unknown touch flags " + flags + " at byte " + (pos - 1));
+            }
+            int at = 4 * touchCount;
+            if ((flags & 1) == 0) {
+                touchCoords[at] = touchCoords[at + 2] = readFloat();
+                touchCoords[at + 1] = touchCoords[at + 3] = readFloat();
+            } else {
+                touchCoords[at] = readFloat();
+                touchCoords[at + 1] = readFloat();
+                touchCoords[at + 2] = readFloat();
+                touchCoords[at + 3] = readFloat();
+            }
+            touchLags[touchCount++] = (flags & 2) != 0 ? readFloat() : 0;
+        }
+        stepCount++;
+        touchStart[stepCount] = touchCount;
+    }
+
+    private void readScreenChange() throws IOException {
+        if (screenChanges == screenChangeStep.length) {
+            screenChangeStep = Arrays.copyOf(screenChangeStep, screenChanges * 2);
+            screenChangeWidth = Arrays.copyOf(screenChangeWidth, screenChanges * 2);
+            screenChangeHeight = Arrays.copyOf(screenChangeHeight, screenChanges * 2);
+        }
+        screenChangeStep[screenChanges] = stepCount;
+        screenChangeWidth[screenChanges] = (int) readVarint();
+        screenChangeHeight[screenChanges] = (int) readVarint();
+        screenChanges++;
+    }
+
+    /**
+     * Replays the whole recording in a new simulation and returns it. Phase times go to
+     * profiler, which may be null.
+     */
+    public GameSimulation replay(FrameProfiler profiler) {
+        GameSimulation simulation = new GameSimulation(seed, fruitVariants, flowerVariants, pestVariants);
+        simulation.setScreenSize(screenWidth, screenHeight);
+        simulation.setDurationMillis(durationMillis);
+        simulation.setStormObjects(stormObjects);
+        simulation.setParallelism(parallel ? parallelism : 0);
+        simulation.setProfiler(profiler);
+        TouchBuffer touches = new TouchBuffer();
+        int nextScreenChange = 0;
+        for (int step = 0; step < stepCount; step++) {
+            while (nextScreenChange < screenChanges && screenChangeStep[nextScreenChange] == step) {
+                simulation.setScreenSize(screenChangeWidth[nextScreenChange],
+                        screenChangeHeight[nextScreenChange]);
+                nextScreenChange++;
+            }
+            touches.clear();
+            for (int t = touchStart[step]; t < touchStart[step + 1]; t++) {
+                touches.addSegment(touchCoords[4 * t], touchCoords[4 * t + 1],
+                        touchCoords[4 * t + 2], touchCoords[4 * t + 3]);
+                touches.setLagTicks(touches.count() - 1, touchLags[t]);
+            }
+            simulation.step(stepNanos[step], touches);
+        }
+        simulation.setParallelism(0);  // Releases the worker threads.
+        return simulation;
+    }
+
+    /**
+     * True if the recording has an end and the simulation, after replay(), ended the same
+     * way. False means the simulation is no longer deterministic, or behaves differently
+     * from the build that recorded the session.
+     */
+    public boolean matches(GameSimulation simulation) {
+        return complete
+                && simulation.getScore() == recordedScore
+                && Math.max(0, simulation.getLives()) == recordedLives
+                && simulation.getWaveCount() == recordedWaveCount
+                && simulation.getElapsedMillis() == recordedElapsedMillis;
+    }
+
+    /**
+     * Sets the thread count for replaying sessions that used ParallelPhysics; defaults to
+     * the number of cores. The outcome is the same for every count.
+     */
+    public void setParallelism(int threads) {
+        this.parallelism = Math.max(1, threads);
+    }
+
+    // Whether the session used ParallelPhysics.
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    public int getTouchCount() {
+        return touchCount;
+    }
+
+    // Total time the recorded steps cover.
+    public long getRecordedNanos() {
+        long total = 0;
+        for (int step = 0; step < stepCount; step++) {
+            total += stepNanos[step];
+        }
+        return total;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getRecordedScore() {
+        return recordedScore;
+    }
+
+    @Override
+    public String toString() {
+        return "Session seed " + seed + (stormObjects > 0 ? ", storm of " + stormObjects : "")
+                + ", " + stepCount + " steps, " + touchCount + " touches, "
+                + getRecordedNanos() / 1_000_000 + " ms, "
+                + (complete ? "score " + recordedScore + " after " + recordedWaveCount + " waves"
+                : "unfinished");
+    }
+
+    private int readByte() throws IOException {
+        if (pos >= data.length) {
+            throw new IOException("Session recording is truncated");
+        }
+        return data[pos++] & 0xFF;
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    private float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at byte " + pos);
+    }
+}
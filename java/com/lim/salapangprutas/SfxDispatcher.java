@@ -0,0 +1,276 @@
+package com.lim.salapangprutas;
+
+import android.media.SoundPool;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays sound effects from a dedicated thread, so callers never pay for SoundPool's
+ * binder calls. Callers only bump a per-category counter (queue) and wake the thread
+ * (flush); everything queued between two dispatches collapses into one play per
+ * category, so a swipe that clears six fruits in one frame plays one fruit sound.
+ * Each category has a voice limit; when it is reached, the category's oldest voice is
+ * stopped. When the whole pool is busy, the oldest voice of the lowest-priority category
+ * at or below the new sound's priority is stopped, or the new sound is dropped.
+ * Nothing here logs or allocates after construction.
+ */
+public class SfxDispatcher {
+
+    public static final int SFX_FRUIT = 0;
+    public static final int SFX_FLOWER = 1;
+    public static final int SFX_PEST = 2;
+    public static final int SFX_LOSE_LIFE = 3;
+    public static final int SFX_GAME_OVER = 4;
+    public static final int SFX_COUNT = 5;
+
+    // SoundPool does not report when a stream ends, so a voice counts as playing for this
+    // long after it started. Longer than any of the tap samples.
+    private static final long VOICE_NANOS = 700_000_000L;
+
+    private final SoundPool pool;
+    private final int maxVoices;
+    private final int[][] samples;
+    private final float[] volumes;
+    private final int[] priorities;
+
+    // Requests per category since the last dispatch, and pending stop requests.
+    private final AtomicIntegerArray pending = new AtomicIntegerArray(SFX_COUNT);
+    private final AtomicIntegerArray stopRequests = new AtomicIntegerArray(SFX_COUNT);
+
+    // Voices per category; dispatcher thread only. A stream id of 0 is a free slot.
+    private final int[][] voiceStreams;
+    private final long[][] voiceStarted;
+    private final Random random = new Random();
+
+    private final AtomicLong played = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param pool        Pool the samples were loaded into.
+     * @param maxVoices   The pool's maximum number of streams.
+     * @param samples     Sample ids per category; one is picked at random per play.
+     * @param volumes     Volume per category.
+     * @param priorities  Priority per category; higher wins when voices are stolen.
+     * @param voiceLimits Maximum simultaneous voices per category.
+     */
+    public SfxDispatcher(SoundPool pool, int maxVoices, int[][] samples, float[] volumes,
+                         int[] priorities, int[] voiceLimits) {
+        this.pool = pool;
+        this.maxVoices = maxVoices;
+        this.samples = samples;
+        this.volumes = volumes;
+        this.priorities = priorities;
+        voiceStreams = new int[SFX_COUNT][];
+        voiceStarted = new long[SFX_COUNT][];
+        for (int category = 0; category < SFX_COUNT; category++) {
+            voiceStreams[category] = new int[voiceLimits[category]];
+            voiceStarted[category] = new long[voiceLimits[category]];
+        }
+        thread = new Thread(this::run, "SfxDispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Requests a sound without waking the dispatcher; call flush() once the batch is done.
+    public void queue(int category) {
+        pending.incrementAndGet(category);
+    }
+
+    // Wakes the dispatcher to play everything queued so far.
+    public void flush() {
+        LockSupport.unpark(thread);
+    }
+
+    // Requests a sound and dispatches it right away.
+    public void play(int category) {
+        queue(category);
+        flush();
+    }
+
+    // Stops every voice of a category, e.g. the game-over jingle when a new round starts.
+    public void stop(int category) {
+        stopRequests.set(category, 1);
+        flush();
+    }
+
+    // Stops the thread and waits for it. No sounds are played afterwards.
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        boolean retry = true;
+        while (retry) {
+            try {
+                thread.join();
+                retry = false;
+            } catch (InterruptedException e) {
+                // The pool must not be released while a play is in flight.
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (!dispatch()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // Handles all pending stops and plays. Returns false if there was nothing to do.
+    private boolean dispatch() {
+        boolean worked = false;
+        for (int category = 0; category < SFX_COUNT; category++) {
+            if (stopRequests.getAndSet(category, 0) != 0) {
+                stopVoices(category);
+                worked = true;
+            }
+        }
+        // Higher categories first, so they claim free voices before lower ones.
+        for (int category = SFX_COUNT - 1; category >= 0; category--) {
+            int requests = pending.getAndSet(category, 0);
+            if (requests > 0) {
+                coalesced.addAndGet(requests - 1);
+                playVoice(category);
+                worked = true;
+            }
+        }
+        return worked;
+    }
+
+    private void playVoice(int category) {
+        long now = System.nanoTime();
+        int[] streams = voiceStreams[category];
+        long[] started = voiceStarted[category];
+
+        int slot = freeSlot(category, now);
+        if (slot < 0) {
+            // The category is at its limit: its oldest voice makes way.
+            slot = oldestSlot(category);
+            pool.stop(streams[slot]);
+            streams[slot] = 0;
+            stolen.incrementAndGet();
+        } else if (liveVoices(now) >= maxVoices && !stealFromLowerPriority(category, now)) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        int[] choices = samples[category];
+        int sample = choices[random.nextInt(choices.length)];
+        float volume = volumes[category];
+        streams[slot] = pool.play(sample, volume, volume, priorities[category], 0, 1f);
+        started[slot] = now;
+        played.incrementAndGet();
+    }
+
+    // A slot of the category that is free or whose voice has finished, or -1.
+    private int freeSlot(int category, long now) {
+        int[] streams = voiceStreams[category];
+        long[] started = voiceStarted[category];
+        for (int slot = 0; slot < streams.length; slot++) {
+            if (streams[slot] == 0 || now - started[slot] >= VOICE_NANOS) {
+                streams[slot] = 0;
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int oldestSlot(int category) {
+        long[] started = voiceStarted[category];
+        int oldest = 0;
+        for (int slot = 1; slot < started.length; slot++) {
+            if (started[slot] < started[oldest]) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private int liveVoices(long now) {
+        int live = 0;
+        for (int category = 0; category < SFX_COUNT; category++) {
+            int[] streams = voiceStreams[category];
+            long[] started = voiceStarted[category];
+            for (int slot = 0; slot < streams.length; slot++) {
+                if (streams[slot] != 0 && now - started[slot] < VOICE_NANOS) {
+                    live++;
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Stops the oldest live voice of the lowest-priority category whose priority does not
+     * exceed the given category's. Returns false if there is no such voice.
+     */
+    private boolean stealFromLowerPriority(int category, long now) {
+        int victimCategory = -1;
+        int victimSlot = -1;
+        for (int other = 0; other < SFX_COUNT; other++) {
+            if (priorities[other] > priorities[category]) {
+                continue;
+            }
+            if (victimCategory >= 0 && priorities[other] > priorities[victimCategory]) {
+                continue;
+            }
+            int[] streams = voiceStreams[other];
+            long[] started = voiceStarted[other];
+            for (int slot = 0; slot < streams.length; slot++) {
+                if (streams[slot] == 0 || now - started[slot] >= VOICE_NANOS) {
+                    continue;
+                }
+                boolean lowerCategory = victimCategory < 0
+                        || priorities[other] < priorities[victimCategory];
+                if (lowerCategory || started[slot] < voiceStarted[victimCategory][victimSlot]) {
+                    victimCategory = other;
+                    victimSlot = slot;
+                }
+            }
+        }
+        if (victimCategory < 0) {
+            return false;
+        }
+        pool.stop(voiceStreams[victimCategory][victimSlot]);
+        voiceStreams[victimCategory][victimSlot] = 0;
+        stolen.incrementAndGet();
+        return true;
+    }
+
+    private void stopVoices(int category) {
+        int[] streams = voiceStreams[category];
+        for (int slot = 0; slot < streams.length; slot++) {
+            if (streams[slot] != 0) {
+                pool.stop(streams[slot]);
+                streams[slot] = 0;
+            }
+        }
+    }
+
+    public long getPlayedCount() {
+        return played.get();
+    }
+
+    // Requests merged into another play of the same category.
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    // Voices stopped early to make room for a new one.
+    public long getStolenCount() {
+        return stolen.get();
+    }
+
+    // Sounds not played because only higher-priority voices were playing.
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,51 @@
+package com.lim.salapangprutas;
+
+import java.util.Random;
+
+/**
+ * java.util.Random whose state can be read and restored, so a game snapshot can continue
+ * the exact random sequence. Uses the same 48-bit linear congruential generator that
+ * java.util.Random specifies, so it produces the same numbers for the same seed.
+ * Not thread-safe, unlike Random; each stream belongs to one simulation thread.
+ */
+public class SnapshotRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // Assigned by setSeed(), which Random's constructor calls before any field
+    // initializer of this class would run, so it must not have one.
+    private long state;
+
+    public SnapshotRandom() {
+        super();
+    }
+
+    public SnapshotRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    // The generator's internal state; unlike a seed, it is restored as is.
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -6,6 +6,9 @@ import android.media.MediaPlayer;
 import android.media.SoundPool;
 import android.util.Log;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class SoundManager {
 
     private static SoundManager instance;
@@ -17,9 +20,6 @@ public class SoundManager {
     private int gameOverSoundId;  // Game-over sound effect.
     private int loseLifeSoundId;  // Lose-life sound effect.
 
-    // To track the stream ID of the game-over sound so we can pause it.
-    private int gameOverStreamId = 0;
-
     // Volume variable for pest SFX. Set to 1.0f (100% volume).
     // Adjust this value if the pest SFX are too loud or soft.
     private float pestVolume = 10.5f;
@@ -38,6 +38,13 @@ public class SoundManager {
 
     private MediaPlayer bgmPlayer;
 
+    // Counts down once per sample as SoundPool finishes decoding it.
+    private final CountDownLatch samplesLoaded;
+
+    private static final int MAX_STREAMS = 10;
+    // Plays the sound effects on its own thread; see SfxDispatcher.
+    private SfxDispatcher sfx;
+
     // Private constructor for singleton pattern.
     private SoundManager(Context context) {
         AudioAttributes audioAttributes = new AudioAttributes.Builder()
@@ -46,12 +53,16 @@ public class SoundManager {
                 .build();
 
         soundPool = new SoundPool.Builder()
-                .setMaxStreams(10)  // Adjust max streams as needed.
+                .setMaxStreams(MAX_STREAMS)  // Adjust max streams as needed.
                 .setAudioAttributes(audioAttributes)
                 .build();
 
+        samplesLoaded = new CountDownLatch(fruitSoundResourceIDs.length
+                + flowerSoundResourceIDs.length + pestSoundResourceIDs.length + 2);
+
         // Log listener for sound loading.
         soundPool.setOnLoadCompleteListener((soundPool, sampleId, status) -> {
+            samplesLoaded.countDown();
             if (status == 0) {
                 Log.d("SoundManager", "Sound loaded successfully: " + sampleId);
             } else {
@@ -84,6 +95,15 @@ public class SoundManager {
         // Load the lose-life sound effect.
         loseLifeSoundId = soundPool.load(context, R.raw.lose_life, 1);
 
+        // Per category: fruit, flower, pest, lose life, game over. Categories may together
+        // ask for more voices than the pool has; higher priorities then win.
+        sfx = new SfxDispatcher(soundPool, MAX_STREAMS,
+                new int[][]{fruitSoundIDs, flowerSoundIDs, pestSoundIDs,
+                        {loseLifeSoundId}, {gameOverSoundId}},
+                new float[]{0.7f, 0.7f, pestVolume, 1f, 1f},
+                new int[]{1, 2, 3, 4, 5},
+                new int[]{4, 3, 3, 1, 1});
+
         // Set up background music. Ensure you have "background_music" in res/raw.
         bgmPlayer = MediaPlayer.create(context, R.raw.background_music);
         bgmPlayer.setLooping(true);
@@ -91,53 +111,63 @@ public class SoundManager {
         bgmPlayer.setVolume(0.5f, 0.5f);
     }
 
-    // Singleton instance getter.
-    public static SoundManager getInstance(Context context) {
+    // Singleton instance getter. Synchronized because AssetPreloader creates the instance
+    // on a background thread.
+    public static synchronized SoundManager getInstance(Context context) {
         if (instance == null) {
             instance = new SoundManager(context.getApplicationContext());
         }
         return instance;
     }
 
+    /**
+     * Waits until every sample is decoded and ready to play. Returns false on timeout.
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return samplesLoaded.await(timeout, unit);
+    }
+
     // Play a random fruit tap sound at a lower volume (0.7).
     public void playFruitTap() {
-        int index = (int) (Math.random() * fruitSoundIDs.length);
-        Log.d("SoundManager", "Playing fruit sound: " + fruitSoundIDs[index]);
-        soundPool.play(fruitSoundIDs[index], 0.7f, 0.7f, 1, 0, 1f);
+        sfx.play(SfxDispatcher.SFX_FRUIT);
     }
 
     // Play a random flower tap sound at a lower volume (0.7).
     public void playFlowerTap() {
-        int index = (int) (Math.random() * flowerSoundIDs.length);
-        Log.d("SoundManager", "Playing flower sound: " + flowerSoundIDs[index]);
-        soundPool.play(flowerSoundIDs[index], 0.7f, 0.7f, 1, 0, 1f);
+        sfx.play(SfxDispatcher.SFX_FLOWER);
     }
 
     // Play a random pest tap sound using pestVolume.
     public void playPestTap() {
-        int index = (int) (Math.random() * pestSoundIDs.length);
-        Log.d("SoundManager", "Playing pest sound: " + pestSoundIDs[index] + " at volume " + pestVolume);
-        soundPool.play(pestSoundIDs[index], pestVolume, pestVolume, 1, 0, 1f);
+        sfx.play(SfxDispatcher.SFX_PEST);
     }
 
     // Play the lose-life sound effect.
     public void playLoseLifeSfx() {
-        Log.d("SoundManager", "Playing lose life sound: " + loseLifeSoundId);
-        soundPool.play(loseLifeSoundId, 1f, 1f, 1, 0, 1f);
+        sfx.play(SfxDispatcher.SFX_LOSE_LIFE);
     }
 
-    // Play the game-over sound effect and store its stream ID.
+    // Play the game-over sound effect.
     public void playGameOverSfx() {
-        Log.d("SoundManager", "Playing game over sound: " + gameOverSoundId);
-        gameOverStreamId = soundPool.play(gameOverSoundId, 1f, 1f, 1, 0, 1f);
+        sfx.play(SfxDispatcher.SFX_GAME_OVER);
     }
 
     // Pause (stop) the game-over sound effect if it's playing.
     public void pauseGameOverSfx() {
-        if (gameOverStreamId != 0) {
-            soundPool.stop(gameOverStreamId);
-            gameOverStreamId = 0;
-        }
+        sfx.stop(SfxDispatcher.SFX_GAME_OVER);
+    }
+
+    /**
+     * Queues a sound effect without playing it yet. Sounds queued before the next
+     * flushSfx() play together, one per category, so the game loop can queue every tap of
+     * a frame and flush once.
+     */
+    public void queueSfx(int category) {
+        sfx.queue(category);
+    }
+
+    public void flushSfx() {
+        sfx.flush();
     }
 
     // Start background music.
@@ -160,10 +190,16 @@ public class SoundManager {
             bgmPlayer.release();
             bgmPlayer = null;
         }
+        if (sfx != null) {
+            sfx.shutdown();
+            sfx = null;
+        }
         if (soundPool != null) {
             soundPool.release();
             soundPool = null;
         }
-        instance = null;
+        synchronized (SoundManager.class) {
+            instance = null;
+        }
     }
 }
@@ -0,0 +1,96 @@
+package com.lim.salapangprutas;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid used as a collision broadphase. Each object is binned by its center into a
+ * square cell at least as large as the biggest object diameter, so two circles can only
+ * overlap when their cells are the same or adjacent.
+ * The grid is rebuilt with a counting sort every call and reuses its arrays, so it does
+ * not allocate once it has grown to the working size.
+ */
+public class SpatialGrid {
+
+    private float cellSize = 1;
+    private int columns = 1;
+    private int rows = 1;
+
+    // cellStart[c] .. cellStart[c + 1] is the range of items (in sortedItems) inside cell c.
+    private int[] cellStart = new int[2];
+    private int[] cellCursor = new int[1];
+    private int[] sortedItems = new int[0];
+    private int[] itemCell = new int[0];
+
+    /**
+     * Bins items 0..count-1 by their center coordinates. Centers outside the given area
+     * are clamped into the border cells, which only adds candidates and never loses any.
+     */
+    public void build(float[] centerX, float[] centerY, int count, float cellSize, int width, int height) {
+        this.cellSize = Math.max(cellSize, 1f);
+        columns = Math.max(1, (int) Math.ceil(width / this.cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / this.cellSize));
+        int cells = columns * rows;
+
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            cellCursor = new int[cells];
+        }
+        if (sortedItems.length < count) {
+            sortedItems = new int[count];
+            itemCell = new int[count];
+        }
+
+        // Count items per cell.
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < count; i++) {
+            int cell = rowOf(centerY[i]) * columns + columnOf(centerX[i]);
+            itemCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        // Prefix sums turn the counts into start offsets.
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // Scatter the items; inside a cell they keep their original order.
+        System.arraycopy(cellStart, 0, cellCursor, 0, cells);
+        for (int i = 0; i < count; i++) {
+            sortedItems[cellCursor[itemCell[i]]++] = i;
+        }
+    }
+
+    public int columnOf(float x) {
+        int column = (int) (x / cellSize);
+        return Math.max(0, Math.min(column, columns - 1));
+    }
+
+    public int rowOf(float y) {
+        int row = (int) (y / cellSize);
+        return Math.max(0, Math.min(row, rows - 1));
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    // First index (into itemAt) of the items in the given cell.
+    public int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    // One past the last index (into itemAt) of the items in the given cell.
+    public int cellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    public int itemAt(int index) {
+        return sortedItems[index];
+    }
+}
@@ -0,0 +1,175 @@
+package com.lim.salapangprutas;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+
+/**
+ * Shared cache of decoded and scaled sprite bitmaps, keyed by (resource id, target size).
+ * Every fruit, flower and pest of the same kind shares one bitmap, so after the first
+ * wave no PNG is decoded or scaled again while the game runs. The cache stays within a
+ * memory budget, evicting the least recently used sprites beyond it.
+ */
+public class SpriteCache {
+
+    private static SpriteCache instance;
+
+    // Enough room for the 14 game drawables at a couple of sizes.
+    private static final int DEFAULT_CAPACITY = 32;
+    // The 14 drawables at 150 px take about 1.2 MB.
+    private static final long DEFAULT_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    private final Resources resources;
+
+    // Small fixed-size table; lookups are a linear scan so nothing is allocated per spawn.
+    private final long[] keys;
+    private final Bitmap[] bitmaps;
+    private final long[] lastUsed;  // Access stamp used to pick the least-recently-used slot.
+    private int count = 0;
+    private long clock = 0;
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+    private long usedBytes = 0;
+    private long peakBytes = 0;
+
+    // Counters so we can confirm the cache is zero-decode after warm-up.
+    private int hits = 0;
+    private int misses = 0;
+    private int evictions = 0;
+
+    private SpriteCache(Context context, int capacity) {
+        resources = context.getResources();
+        keys = new long[capacity];
+        bitmaps = new Bitmap[capacity];
+        lastUsed = new long[capacity];
+    }
+
+    // Singleton instance getter.
+    public static synchronized SpriteCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new SpriteCache(context.getApplicationContext(), DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the drawable decoded and scaled to size x size pixels, decoding it only on the
+     * first request. The returned bitmap is shared and must not be modified or recycled.
+     */
+    public synchronized Bitmap get(int resId, int size) {
+        long key = ((long) resId << 32) | (size & 0xffffffffL);
+        clock++;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) {
+                hits++;
+                lastUsed[i] = clock;
+                return bitmaps[i];
+            }
+        }
+
+        misses++;
+        // Subsample while decoding, so the full-resolution image never exists in memory.
+        Bitmap decoded = BitmapDecoder.decodeSampled(resources, resId, size, size,
+                Bitmap.Config.ARGB_8888);
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, size, size, false);
+        if (scaled != decoded) {
+            BitmapDecoder.offerReusable(decoded);
+        }
+        long bytes = scaled.getAllocationByteCount();
+
+        // Evict least-recently-used entries until the new one fits the table and the budget.
+        // Entities still holding an evicted bitmap keep drawing it; it is simply no longer
+        // shared with new spawns.
+        while (count > 0 && (count == keys.length || usedBytes + bytes > budgetBytes)) {
+            evict(leastRecentlyUsed());
+        }
+        int slot = count++;
+        keys[slot] = key;
+        bitmaps[slot] = scaled;
+        lastUsed[slot] = clock;
+        usedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+        return scaled;
+    }
+
+    private int leastRecentlyUsed() {
+        int slot = 0;
+        for (int i = 1; i < count; i++) {
+            if (lastUsed[i] < lastUsed[slot]) {
+                slot = i;
+            }
+        }
+        return slot;
+    }
+
+    // Removes a slot by moving the last entry into it.
+    private void evict(int slot) {
+        usedBytes -= bitmaps[slot].getAllocationByteCount();
+        int last = count - 1;
+        keys[slot] = keys[last];
+        bitmaps[slot] = bitmaps[last];
+        lastUsed[slot] = lastUsed[last];
+        bitmaps[last] = null;
+        count--;
+        evictions++;
+    }
+
+    /**
+     * Sets the most memory the cached sprites may use together. Entries beyond it are
+     * evicted, least recently used first, as new sprites are decoded.
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    // Reset the hit/miss/eviction counters, e.g. at the start of a round.
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    // Drop every cached bitmap. Entities still on screen keep their references.
+    public synchronized void clear() {
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = null;
+        }
+        count = 0;
+        usedBytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SpriteCache{size=" + count + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions
+                + ", usedKB=" + usedBytes / 1024 + ", peakKB=" + peakBytes / 1024
+                + ", budgetKB=" + budgetBytes / 1024 + "}";
+    }
+}
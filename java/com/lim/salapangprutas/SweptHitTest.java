@@ -0,0 +1,173 @@
+package com.lim.salapangprutas;
+
+/**
+ * Tests a batch of touch segments against every entity in one pass. Each segment is
+ * swept against the entity circles (with the same 10 px buffer as EntityStore.contains),
+ * so a fast swipe hits fruit lying between two touch samples. Candidates come from a
+ * SpatialGrid query around each segment instead of a scan of the whole store.
+ * An entity is reported at most once per batch, in the order it was first hit.
+ */
+public class SweptHitTest {
+
+    // Below this many entities, scanning them all is cheaper than building the grid.
+    private static final int BROADPHASE_MIN_OBJECTS = 16;
+    private static final float TOUCH_BUFFER = 10;
+
+    private final SpatialGrid grid = new SpatialGrid();
+    private float[] centerX = new float[16];
+    private float[] centerY = new float[16];
+    private float[] reach = new float[16];
+    private boolean[] hit = new boolean[16];
+    private int[] hitOrder = new int[16];
+    private int[] hitTouch = new int[16];  // Touch segment behind each hit, in hit order.
+    private int hitCount = 0;
+
+    /**
+     * Finds every entity touched by any segment in touches, at the entities' current
+     * positions. Returns the number of entities hit; they are available through hitAt()
+     * and isHit() until the next call.
+     */
+    public int test(EntityStore store, TouchBuffer touches, int screenWidth, int screenHeight) {
+        return test(store, touches, screenWidth, screenHeight, 0);
+    }
+
+    /**
+     * Like test(), but a segment with a lag is tested against where the entities were that
+     * many ticks before tick, their current positions' tick, i.e. where the player saw them.
+     */
+    public int test(EntityStore store, TouchBuffer touches, int screenWidth, int screenHeight,
+                    long tick) {
+        int n = store.count();
+        if (centerX.length < n) {
+            int capacity = Math.max(n, centerX.length * 2);
+            centerX = new float[capacity];
+            centerY = new float[capacity];
+            reach = new float[capacity];
+            hit = new boolean[capacity];
+            hitOrder = new int[capacity];
+            hitTouch = new int[capacity];
+        }
+        hitCount = 0;
+
+        float maxReach = 0;
+        for (int i = 0; i < n; i++) {
+            float r = store.size[i] / 2f;
+            centerX[i] = store.x[i] + r;
+            centerY[i] = store.y[i] + r;
+            reach[i] = r + TOUCH_BUFFER;
+            hit[i] = false;
+            maxReach = Math.max(maxReach, reach[i]);
+        }
+        if (n == 0) {
+            return 0;
+        }
+
+        boolean broadphase = n >= BROADPHASE_MIN_OBJECTS;
+        if (broadphase) {
+            grid.build(centerX, centerY, n, 2 * maxReach, screenWidth, screenHeight);
+        }
+        // The grid holds current positions; a lagged query is widened by the furthest any
+        // entity has moved over the history.
+        float maxShift = -1;
+
+        for (int t = 0, count = touches.count(); t < count; t++) {
+            float x0 = touches.startX(t);
+            float y0 = touches.startY(t);
+            float x1 = touches.x(t);
+            float y1 = touches.y(t);
+            float lag = touches.lagTicks(t) > 0 && tick > 0 ? touches.lagTicks(t) : 0;
+            if (!broadphase) {
+                for (int i = 0; i < n; i++) {
+                    testEntity(store, i, t, x0, y0, x1, y1, tick, lag);
+                }
+                continue;
+            }
+            float margin = maxReach;
+            if (lag > 0) {
+                if (maxShift < 0) {
+                    maxShift = maxHistoryShift(store);
+                }
+                margin += maxShift;
+            }
+            // Every cell an entity touching the segment could be binned in.
+            int firstColumn = grid.columnOf(Math.min(x0, x1) - margin);
+            int lastColumn = grid.columnOf(Math.max(x0, x1) + margin);
+            int firstRow = grid.rowOf(Math.min(y0, y1) - margin);
+            int lastRow = grid.rowOf(Math.max(y0, y1) + margin);
+            int columns = grid.getColumns();
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+                    for (int k = grid.cellStart(cell), end = grid.cellEnd(cell); k < end; k++) {
+                        testEntity(store, grid.itemAt(k), t, x0, y0, x1, y1, tick, lag);
+                    }
+                }
+            }
+        }
+        return hitCount;
+    }
+
+    // Largest distance along either axis between an entity's current and a past position.
+    private static float maxHistoryShift(EntityStore store) {
+        float shift = 0;
+        for (int i = 0, n = store.count(); i < n; i++) {
+            for (int k = i * EntityStore.HISTORY_TICKS, end = k + EntityStore.HISTORY_TICKS; k < end; k++) {
+                shift = Math.max(shift, Math.abs(store.historyX[k] - store.x[i]));
+                shift = Math.max(shift, Math.abs(store.historyY[k] - store.y[i]));
+            }
+        }
+        return shift;
+    }
+
+    private void testEntity(EntityStore store, int i, int touch, float x0, float y0, float x1, float y1,
+                            long tick, float lag) {
+        if (hit[i]) {
+            return;
+        }
+        float cx = centerX[i];
+        float cy = centerY[i];
+        if (lag > 0) {
+            float r = store.size[i] / 2f;
+            cx = store.historyX(i, tick, lag) + r;
+            cy = store.historyY(i, tick, lag) + r;
+        }
+        if (segmentHitsCircle(x0, y0, x1, y1, cx, cy, reach[i])) {
+            hit[i] = true;
+            hitTouch[hitCount] = touch;
+            hitOrder[hitCount++] = i;
+        }
+    }
+
+    /**
+     * True if the segment from (x0, y0) to (x1, y1) passes within radius of (cx, cy).
+     */
+    static boolean segmentHitsCircle(float x0, float y0, float x1, float y1,
+                                     float cx, float cy, float radius) {
+        float segX = x1 - x0;
+        float segY = y1 - y0;
+        float lengthSquared = segX * segX + segY * segY;
+        // Parameter of the point on the segment closest to the center.
+        float t = 0;
+        if (lengthSquared > 0) {
+            t = ((cx - x0) * segX + (cy - y0) * segY) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        float diffX = x0 + segX * t - cx;
+        float diffY = y0 + segY * t - cy;
+        return diffX * diffX + diffY * diffY <= radius * radius;
+    }
+
+    // Index of the k-th entity hit, in hit order.
+    public int hitAt(int k) {
+        return hitOrder[k];
+    }
+
+    // Index in the TouchBuffer of the segment that made the k-th hit.
+    public int touchAt(int k) {
+        return hitTouch[k];
+    }
+
+    public boolean isHit(int i) {
+        return hit[i];
+    }
+}
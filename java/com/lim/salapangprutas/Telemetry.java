@@ -0,0 +1,294 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gameplay events of the current round (taps, misses, lives lost, waves, collisions),
+ * written to a file without slowing the game down. record() stores a fixed-size record of
+ * primitives in a preallocated ring, the same single-producer scheme as TouchQueue: no
+ * locks, no allocation, a few array writes. A background thread drains the ring every
+ * DRAIN_INTERVAL_MILLIS, encodes the batch and appends it to the file. If the writer falls
+ * behind and the ring fills, events are dropped, counted, and the gap is marked in the
+ * file.
+ *
+ * Each EVENT_ROUND_START starts the file over, so it holds the latest round. Format
+ * (big-endian; varints are unsigned LEB128, args zigzag-encoded):
+ * <pre>
+ * header:  int MAGIC, byte VERSION
+ * records: byte kind, varint milliseconds since the previous record, varint a, varint b
+ * </pre>
+ * EVENT_DROPPED records are written by the writer, with a the number of events lost.
+ * Events are typically 4 to 6 bytes; a two-minute round is a few kilobytes.
+ */
+public class Telemetry {
+
+    static final int MAGIC = 0x53414C54;  // "SALT"
+    static final int VERSION = 1;
+
+    // Event kinds and their arguments.
+    public static final int EVENT_ROUND_START = 0;  // a, b: high and low half of the seed
+    public static final int EVENT_TAP = 1;          // a: entity type, b: points scored
+    public static final int EVENT_MISS = 2;         // a: entity type of the fallen object
+    public static final int EVENT_LIFE_LOST = 3;    // a: LIFE_LOST_*, b: lives left
+    public static final int EVENT_WAVE = 4;         // a: wave count, b: objects per wave
+    public static final int EVENT_COLLISIONS = 5;   // a: colliding pairs in a tick, b: objects
+    public static final int EVENT_ROUND_END = 6;    // a: score, b: waves
+    public static final int EVENT_DROPPED = 7;      // a: events lost before this record
+    static final int EVENT_KINDS = 8;
+
+    public static final int LIFE_LOST_MISSED = 0;
+    public static final int LIFE_LOST_PEST = 1;
+
+    public static final int CAPACITY = 4096;  // Must be a power of two.
+    private static final int MASK = CAPACITY - 1;
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 5 + 5;
+
+    private final long[] times = new long[CAPACITY];
+    private final int[] kinds = new int[CAPACITY];
+    private final int[] argsA = new int[CAPACITY];
+    private final int[] argsB = new int[CAPACITY];
+    private final AtomicLong head = new AtomicLong();  // Next slot to read; writer-owned.
+    private final AtomicLong tail = new AtomicLong();  // Next slot to write; producer-owned.
+    private final AtomicLong dropped = new AtomicLong();
+    private final long[] recorded = new long[EVENT_KINDS];  // Producer thread only.
+
+    // Writer thread state.
+    private final File file;
+    private final ScheduledExecutorService writer;
+    private ScheduledFuture<?> draining;  // Guarded by this.
+    private boolean shutdown = false;      // Guarded by this.
+    private OutputStream out;
+    // Encoded batch waiting to be written; a full ring fits.
+    private byte[] buffer = new byte[CAPACITY * MAX_RECORD_BYTES];
+    private int length;
+    private long previousTime;
+    private long reportedDrops;
+    private volatile long written;
+    private volatile long writtenBytes;
+    private volatile int batches;
+    private volatile int largestBatch;
+    private volatile long encodeNanos;
+    private volatile String lastError;
+
+    /**
+     * Telemetry written to file; null keeps the events in the ring only, for benchmarks.
+     */
+    public Telemetry(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Telemetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stores an event. Producer thread (the simulation's) only; never blocks or allocates.
+     * Returns false if the ring was full and the event was dropped.
+     */
+    public boolean record(int kind, long timeMillis, int a, int b) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int slot = (int) (t & MASK);
+        times[slot] = timeMillis;
+        kinds[slot] = kind;
+        argsA[slot] = a;
+        argsB[slot] = b;
+        recorded[kind]++;
+        // Publishes the record together with the new tail.
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Starts draining the ring in the background, e.g. when the game loop starts.
+     */
+    public synchronized void resume() {
+        if (draining == null && !shutdown) {
+            draining = writer.scheduleWithFixedDelay(this::drainAndWrite,
+                    DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the periodic draining, after writing out what was recorded so far; e.g. when
+     * the round ends or the game loop stops. Does nothing after shutdown().
+     */
+    public synchronized void pause() {
+        if (shutdown) {
+            return;
+        }
+        if (draining != null) {
+            draining.cancel(false);
+            draining = null;
+        }
+        writer.execute(this::drainAndWrite);
+    }
+
+    private void drainAndWrite() {
+        if (drain() == 0 && length == 0) {
+            return;
+        }
+        try {
+            if (out != null) {
+                out.write(buffer, 0, length);
+                out.flush();
+                writtenBytes += length;
+            }
+        } catch (IOException e) {
+            // The rest of the round is lost; the next round start opens the file anew.
+            lastError = "Could not write " + file + ": " + e;
+            closeFile();
+        }
+        length = 0;
+    }
+
+    /**
+     * Encodes every published event into the buffer and returns how many there were.
+     * Writer thread only; package-private for the benchmarks.
+     */
+    int drain() {
+        long start = System.nanoTime();
+        long h = head.get();
+        long t = tail.get();
+        long drops = dropped.get();
+        int count = (int) (t - h);
+        while (h < t) {
+            int slot = (int) (h & MASK);
+            if (kinds[slot] == EVENT_ROUND_START) {
+                startFile();
+            }
+            encode(kinds[slot], times[slot], argsA[slot], argsB[slot]);
+            h++;
+        }
+        if (drops > reportedDrops) {
+            // The ring only drops once it is full, so the lost events came after this batch.
+            encode(EVENT_DROPPED, previousTime, (int) Math.min(drops - reportedDrops, Integer.MAX_VALUE), 0);
+            reportedDrops = drops;
+        }
+        // Hands the slots back to the producer only after they were read.
+        head.lazySet(h);
+        if (count > 0) {
+            written += count;
+            batches++;
+            largestBatch = Math.max(largestBatch, count);
+            encodeNanos += System.nanoTime() - start;
+        }
+        return count;
+    }
+
+    // Writes out the previous round and starts the file over with a header.
+    private void startFile() {
+        if (out != null) {
+            try {
+                out.write(buffer, 0, length);
+                writtenBytes += length;
+            } catch (IOException e) {
+                lastError = "Could not write " + file + ": " + e;
+            }
+        }
+        closeFile();
+        length = 0;
+        previousTime = 0;
+        if (file != null) {
+            try {
+                out = new FileOutputStream(file);
+            } catch (IOException e) {
+                lastError = "Could not open " + file + ": " + e;
+            }
+        }
+        writeInt(MAGIC);
+        buffer[length++] = (byte) VERSION;
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                lastError = "Could not close " + file + ": " + e;
+            }
+            out = null;
+        }
+    }
+
+    private void encode(int kind, long time, int a, int b) {
+        if (length + MAX_RECORD_BYTES > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte) kind;
+        // A new round restarts the clock, so deltas are never negative.
+        writeVarint(Math.max(0, time - previousTime));
+        previousTime = time;
+        writeVarint(((a << 1) ^ (a >> 31)) & 0xFFFFFFFFL);
+        writeVarint(((b << 1) ^ (b >> 31)) & 0xFFFFFFFFL);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    // Forgets the encoded bytes; for the benchmarks, which drain without a file.
+    void clearBuffer() {
+        length = 0;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Events of a kind recorded so far, dropped ones not included; may lag behind when
+    // read from another thread than the producer.
+    public long getRecordedCount(int kind) {
+        return recorded[kind];
+    }
+
+    // Closes the file and stops the writer thread once the work already submitted is done;
+    // call pause() first to write out the events still in the ring. Later calls to this,
+    // pause() and resume() do nothing, as surface callbacks may still arrive.
+    public synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        if (draining != null) {
+            draining.cancel(false);
+            draining = null;
+        }
+        writer.execute(this::closeFile);
+        writer.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        int n = batches;
+        return "Telemetry: " + written + " events, " + writtenBytes / 1024 + " KB in " + n
+                + " batches (largest " + largestBatch + ", " + (n > 0 ? encodeNanos / n / 1000 : 0)
+                + " us to encode on average), " + dropped.get() + " dropped"
+                + (lastError != null ? "; " + lastError : "");
+    }
+}
@@ -0,0 +1,105 @@
+package com.lim.salapangprutas;
+
+/**
+ * Fixed-size batch of touch segments handed to GameSimulation.step(). A segment is the
+ * path of a finger between two consecutive samples; a tap is a segment whose ends are
+ * the same point. Preallocated so that collecting and applying touches never allocates.
+ */
+public class TouchBuffer {
+
+    public static final int CAPACITY = 64;
+
+    // startX, startY, endX, endY per segment.
+    private final float[] segments = new float[CAPACITY * 4];
+    // System.nanoTime() of the input event that ended each segment; 0 if unknown.
+    private final long[] eventNanos = new long[CAPACITY];
+    // How many ticks behind the simulation the screen was when each segment was drawn;
+    // the hit-test looks that far back. 0 tests against the current positions.
+    private final float[] lagTicks = new float[CAPACITY];
+    private int count = 0;
+
+    /**
+     * Appends a touch point. Returns false (and drops the point) when the buffer is full.
+     */
+    public boolean add(float x, float y) {
+        return addSegment(x, y, x, y);
+    }
+
+    /**
+     * Appends the path from (x0, y0) to (x1, y1). Returns false (and drops the segment)
+     * when the buffer is full.
+     */
+    public boolean addSegment(float x0, float y0, float x1, float y1) {
+        return addSegment(x0, y0, x1, y1, 0);
+    }
+
+    /**
+     * Appends the path from (x0, y0) to (x1, y1), ended by an input event at eventNanos
+     * (System.nanoTime() time base). Returns false (and drops the segment) when the buffer
+     * is full.
+     */
+    public boolean addSegment(float x0, float y0, float x1, float y1, long eventNanos) {
+        if (count == CAPACITY) {
+            return false;
+        }
+        int base = count * 4;
+        segments[base] = x0;
+        segments[base + 1] = y0;
+        segments[base + 2] = x1;
+        segments[base + 3] = y1;
+        this.eventNanos[count] = eventNanos;
+        lagTicks[count] = 0;
+        count++;
+        return true;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count == CAPACITY;
+    }
+
+    public float startX(int i) {
+        return segments[i * 4];
+    }
+
+    public float startY(int i) {
+        return segments[i * 4 + 1];
+    }
+
+    // End point of segment i; for a tap, the tap itself.
+    public float x(int i) {
+        return segments[i * 4 + 2];
+    }
+
+    public float y(int i) {
+        return segments[i * 4 + 3];
+    }
+
+    // When the input event of segment i happened, or 0 if unknown (e.g. in a replay).
+    public long eventNanos(int i) {
+        return eventNanos[i];
+    }
+
+    public float lagTicks(int i) {
+        return lagTicks[i];
+    }
+
+    public void setLagTicks(int i, float lagTicks) {
+        this.lagTicks[i] = lagTicks;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Replaces the contents of this buffer with a copy of other.
+    public void copyFrom(TouchBuffer other) {
+        System.arraycopy(other.segments, 0, segments, 0, other.count * 4);
+        System.arraycopy(other.eventNanos, 0, eventNanos, 0, other.count);
+        System.arraycopy(other.lagTicks, 0, lagTicks, 0, other.count);
+        count = other.count;
+    }
+}
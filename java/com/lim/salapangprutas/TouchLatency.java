@@ -0,0 +1,143 @@
+package com.lim.salapangprutas;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Touch-to-photon latency of hits: from the input event of the touch that hit an object to
+ * the stages of the response.
+ * <pre>
+ * hit     the simulation hit-tested the touch and scored or removed the object
+ * audio   the tap sound was handed to the SoundManager
+ * photon  the first frame without the object was posted (unlockCanvasAndPost)
+ * </pre>
+ * The post is the last moment the app sees; the compositor and display add up to a couple
+ * of frames on top, the same for any change to the game loop, so comparisons between
+ * builds hold. Game thread only, apart from the histograms, which may be read anywhere.
+ */
+public class TouchLatency {
+
+    public static final int STAGE_HIT = 0;
+    public static final int STAGE_AUDIO = 1;
+    public static final int STAGE_PHOTON = 2;
+    public static final int STAGE_COUNT = 3;
+
+    private static final String[] STAGE_NAMES = {"hit", "audio", "photon"};
+
+    // Hits waiting for their sound or frame; more in one frame are not measured.
+    private static final int MAX_PENDING = 64;
+
+    private final Histogram[] stages = new Histogram[STAGE_COUNT];
+    private final long[] awaitingAudio = new long[MAX_PENDING];
+    private int awaitingAudioCount = 0;
+    private final long[] awaitingPhoton = new long[MAX_PENDING];
+    private int awaitingPhotonCount = 0;
+    private long overflows = 0;
+
+    public TouchLatency() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    public static String stageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * A touch made at eventNanos hit an object, now. Touches without a time are ignored.
+     */
+    public void onHit(long eventNanos, long nowNanos) {
+        if (eventNanos == 0) {
+            return;
+        }
+        stages[STAGE_HIT].record(Math.max(0, nowNanos - eventNanos));
+        if (awaitingAudioCount < MAX_PENDING && awaitingPhotonCount < MAX_PENDING) {
+            awaitingAudio[awaitingAudioCount++] = eventNanos;
+            awaitingPhoton[awaitingPhotonCount++] = eventNanos;
+        } else {
+            overflows++;
+        }
+    }
+
+    // The sounds of the hits so far were handed to the SoundManager.
+    public void onAudioQueued(long nowNanos) {
+        complete(STAGE_AUDIO, awaitingAudio, awaitingAudioCount, nowNanos);
+        awaitingAudioCount = 0;
+    }
+
+    // A frame showing the hits so far was posted.
+    public void onFramePosted(long nowNanos) {
+        complete(STAGE_PHOTON, awaitingPhoton, awaitingPhotonCount, nowNanos);
+        awaitingPhotonCount = 0;
+    }
+
+    private void complete(int stage, long[] eventNanos, int count, long nowNanos) {
+        for (int i = 0; i < count; i++) {
+            stages[stage].record(Math.max(0, nowNanos - eventNanos[i]));
+        }
+    }
+
+    /**
+     * Forgets hits still waiting, e.g. when the loop stops before their frame was posted;
+     * the wait would otherwise include the pause.
+     */
+    public void clearPending() {
+        awaitingAudioCount = 0;
+        awaitingPhotonCount = 0;
+    }
+
+    public Histogram getStage(int stage) {
+        return stages[stage];
+    }
+
+    public void reset() {
+        clearPending();
+        overflows = 0;
+        for (Histogram stage : stages) {
+            stage.reset();
+        }
+    }
+
+    // One line, e.g. for the debug overlay: p50/p95/p99 per stage in milliseconds.
+    public String summary() {
+        StringBuilder sb = new StringBuilder("touch");
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            Histogram h = stages[i];
+            sb.append(' ').append(STAGE_NAMES[i]).append(' ')
+                    .append(h.getPercentile(50) / 1_000_000).append('/')
+                    .append(h.getPercentile(95) / 1_000_000).append('/')
+                    .append(h.getPercentile(99) / 1_000_000);
+        }
+        return sb.append(" ms").toString();
+    }
+
+    /**
+     * Writes the percentiles per stage in microseconds, one stage per line, in the same
+     * layout as FrameProfiler.dump().
+     */
+    public void dump(Writer out) throws IOException {
+        out.write(String.format(Locale.US, "hits=%d unmeasured=%d%n",
+                stages[STAGE_HIT].getCount(), overflows));
+        out.write(String.format(Locale.US, "%-12s %8s %8s %8s %8s %8s %8s %8s%n",
+                "stage", "count", "meanUs", "p50Us", "p90Us", "p95Us", "p99Us", "maxUs"));
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            Histogram h = stages[i];
+            out.write(String.format(Locale.US, "%-12s %8d %8d %8d %8d %8d %8d %8d%n", STAGE_NAMES[i],
+                    h.getCount(), h.getMean() / 1000, h.getPercentile(50) / 1000,
+                    h.getPercentile(90) / 1000, h.getPercentile(95) / 1000,
+                    h.getPercentile(99) / 1000, h.getMax() / 1000));
+        }
+        out.flush();
+    }
+
+    // Writes the report to a file, replacing it. Call off the game thread.
+    public void dump(File file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            dump(out);
+        }
+    }
+}
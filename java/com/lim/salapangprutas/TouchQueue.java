@@ -0,0 +1,67 @@
+package com.lim.salapangprutas;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free queue of touch segments from the UI thread to the game thread. There must be
+ * exactly one producer (onTouchEvent) and one consumer (the game loop): each side only
+ * advances its own index and publishes it with an ordered write, so neither ever blocks
+ * or allocates. When the consumer falls behind and the ring is full, new segments are
+ * dropped and counted.
+ */
+public class TouchQueue {
+
+    public static final int CAPACITY = 256;  // Must be a power of two.
+    private static final int MASK = CAPACITY - 1;
+
+    private final float[] segments = new float[CAPACITY * 4];
+    private final long[] eventNanos = new long[CAPACITY];
+    private final AtomicLong head = new AtomicLong();  // Next slot to read; consumer-owned.
+    private final AtomicLong tail = new AtomicLong();  // Next slot to write; producer-owned.
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Queues the path from (x0, y0) to (x1, y1), ended by an input event at eventNanos.
+     * Producer thread only. Returns false if the queue was full and the segment was dropped.
+     */
+    public boolean offer(float x0, float y0, float x1, float y1, long eventNanos) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int base = (int) (t & MASK) * 4;
+        segments[base] = x0;
+        segments[base + 1] = y0;
+        segments[base + 2] = x1;
+        segments[base + 3] = y1;
+        this.eventNanos[(int) (t & MASK)] = eventNanos;
+        // Publishes the slot contents together with the new tail.
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Moves queued segments into out until the queue is empty or out is full, and returns
+     * how many were moved. Consumer thread only.
+     */
+    public int drainTo(TouchBuffer out) {
+        long h = head.get();
+        long t = tail.get();
+        int moved = 0;
+        while (h < t && !out.isFull()) {
+            int base = (int) (h & MASK) * 4;
+            out.addSegment(segments[base], segments[base + 1], segments[base + 2], segments[base + 3],
+                    eventNanos[(int) (h & MASK)]);
+            h++;
+            moved++;
+        }
+        // Hands the slots back to the producer only after they were read.
+        head.lazySet(h);
+        return moved;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -2,93 +2,164 @@ package com.lim.salapangprutas;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.RectF;
 
-import java.util.Random;
-
+/**
+ * Lightweight view of one object stored in an EntityStore. The state lives in the store's
+ * arrays; a view is pointed at an index with moveTo() and can be reused for any object.
+ * Because the store swap-removes, a view is only valid until the next removal.
+ */
 public class rndSqr {
-    private static final Random rnd = new Random();
-    public PointF pos; // Top-left corner of the circle's bounding box.
-    public int size;   // Diameter of the circle.
-    private Bitmap image;
-    public float dx;
-    public float dy;
-    private int points;
-    private boolean penalty;
-
-    // New fields for rotation.
-    private float angle = 0;         // Current rotation angle (in degrees).
-    private float rotationSpeed;     // Rotation speed in degrees per update.
-
-    public rndSqr(PointF pos, int size, Bitmap image, int speed) {
-        this(pos, size, image,
-                (float) (speed * Math.cos(Math.PI / 4 + rnd.nextFloat() * Math.PI / 2)),
-                (float) (speed * Math.sin(Math.PI / 4 + rnd.nextFloat() * Math.PI / 2)),
-                false);
-    }
-
-    public rndSqr(PointF pos, int size, Bitmap image, float dx, float dy, boolean penalty) {
-        this.pos = pos;
-        this.size = size;
-        // Scale the image to fit the bounding box of the circle.
-        this.image = Bitmap.createScaledBitmap(image, size, size, false);
-        this.dx = dx;
-        this.dy = dy;
-        this.penalty = penalty;
-        this.points = penalty ? -5 : (size < 100 ? 10 : 5);
-        // Initialize rotation speed to a random value between -5 and +5 degrees per update.
-        this.rotationSpeed = (rnd.nextFloat() - 0.5f) * 10;
+    private final EntityStore store;
+    private int index;
+
+    public rndSqr(EntityStore store) {
+        this.store = store;
+    }
+
+    public rndSqr(EntityStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    // Points this view at another entity and returns it, so one view can walk the store.
+    public rndSqr moveTo(int index) {
+        this.index = index;
+        return this;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public float getX() {
+        return store.x[index];
+    }
+
+    public float getY() {
+        return store.y[index];
+    }
+
+    public int getSize() {
+        return store.size[index];
     }
 
     public void update(int screenWidth, int screenHeight) {
-        pos.x += dx;
-        pos.y += dy;
+        store.prevX[index] = store.x[index];
+        store.prevY[index] = store.y[index];
+        store.prevAngle[index] = store.angle[index];
+        store.x[index] += store.dx[index];
+        store.y[index] += store.dy[index];
         // Update the rotation angle.
-        angle = (angle + rotationSpeed) % 360;
+        store.angle[index] = (store.angle[index] + store.rotationSpeed[index]) % 360;
+    }
+
+    /**
+     * Draws the object interpolated between its previous and current state.
+     *
+     * @param image The object's sprite, already scaled to its size.
+     * @param alpha 0 draws the state before the last update, 1 the current state.
+     */
+    public void draw(Canvas c, Bitmap image, float alpha) {
+        draw(c, image, alpha, null);
     }
 
-    public void draw(Canvas c) {
+    /**
+     * Like draw(Canvas, Bitmap, float), but blits a pre-rotated frame from rotations when
+     * one is available instead of rotating the canvas.
+     *
+     * @param rotations Pre-rotated frames, or null to always rotate the canvas.
+     */
+    public void draw(Canvas c, Bitmap image, float alpha, RotationCache rotations) {
+        draw(c, image, alpha, rotations, null);
+    }
+
+    /**
+     * Like draw(Canvas, Bitmap, float, RotationCache), drawing the bitmap with paint, e.g.
+     * one with filtering turned on. Paint may be null.
+     */
+    public void draw(Canvas c, Bitmap image, float alpha, RotationCache rotations, Paint paint) {
+        int i = index;
+        float x = store.prevX[i] + (store.x[i] - store.prevX[i]) * alpha;
+        float y = store.prevY[i] + (store.y[i] - store.prevY[i]) * alpha;
+        // Interpolate with the rotation speed rather than the stored angle, which wraps at 360.
+        float drawAngle = store.prevAngle[i] + store.rotationSpeed[i] * alpha;
+
         // Compute the center of the circle.
-        float centerX = pos.x + size / 2f;
-        float centerY = pos.y + size / 2f;
+        float centerX = x + store.size[i] / 2f;
+        float centerY = y + store.size[i] / 2f;
+
+        if (rotations != null) {
+            Bitmap frame = rotations.frame(image, drawAngle);
+            if (frame != null) {
+                // Frames are centered on the sprite's center, so no canvas transform is needed.
+                c.drawBitmap(frame, centerX - frame.getWidth() / 2f,
+                        centerY - frame.getHeight() / 2f, paint);
+                return;
+            }
+        }
 
         // Save the current canvas state.
         c.save();
         // Rotate the canvas around the circle's center.
-        c.rotate(angle, centerX, centerY);
+        c.rotate(drawAngle, centerX, centerY);
         // Draw the image. Because the canvas is rotated,
         // the image will appear rotated.
-        c.drawBitmap(image, pos.x, pos.y, null);
+        c.drawBitmap(image, x, y, paint);
         // Restore the canvas to its original state.
         c.restore();
     }
 
+    /**
+     * Draws the object interpolated like draw(), but without its rotation: a plain blit,
+     * the cheapest way to draw it. Paint may be null.
+     */
+    public void drawUpright(Canvas c, Bitmap image, float alpha, Paint paint) {
+        int i = index;
+        float x = store.prevX[i] + (store.x[i] - store.prevX[i]) * alpha;
+        float y = store.prevY[i] + (store.y[i] - store.prevY[i]) * alpha;
+        c.drawBitmap(image, x, y, paint);
+    }
+
+    /**
+     * Stores the screen area draw() covers at the given alpha in out. The area holds the
+     * sprite at any angle, so it does not depend on the rotation.
+     */
+    public void getDrawBounds(float alpha, RectF out) {
+        int i = index;
+        float half = store.size[i] / 2f;
+        float centerX = store.prevX[i] + (store.x[i] - store.prevX[i]) * alpha + half;
+        float centerY = store.prevY[i] + (store.y[i] - store.prevY[i]) * alpha + half;
+        // Half the diagonal, plus a pixel for rounding of pre-rotated frames.
+        float reach = half * 1.4143f + 1;
+        out.set(centerX - reach, centerY - reach, centerX + reach, centerY + reach);
+    }
+
     public boolean contains(PointF point) {
-        float radius = size / 2f;
-        float centerX = pos.x + radius;
-        float centerY = pos.y + radius;
-        // Add a buffer of x pixels
-        float buffer = 10;
-        float diffX = point.x - centerX;
-        float diffY = point.y - centerY;
-        return (diffX * diffX + diffY * diffY) <= ((radius + buffer) * (radius + buffer));
+        return store.contains(index, point.x, point.y);
+    }
+
+    public boolean contains(float x, float y) {
+        return store.contains(index, x, y);
     }
 
     public void setPoints(int points) {
-        this.points = points;
+        store.points[index] = points;
     }
 
     public int getPoints() {
-        return points;
+        return store.points[index];
     }
 
     public boolean isPenalty() {
-        return penalty;
+        return store.isPenalty(index);
     }
 
     // Used to determine if an object is a fruit (non-penalty).
     public boolean isPointSquare() {
-        return !penalty;
+        return !store.isPenalty(index);
     }
 
 }